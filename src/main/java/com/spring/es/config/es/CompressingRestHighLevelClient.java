@@ -0,0 +1,35 @@
+package com.spring.es.config.es;
+
+import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.RestHighLevelClient;
+
+/**
+ * 类描述：带压缩配置的 RestHighLevelClient
+ * <p>
+ * 压缩配置随 client 实例保存, 同一进程内的多个 client 互不影响 (见 EsRequestOptions / GzipBulkClient)
+ */
+public class CompressingRestHighLevelClient extends RestHighLevelClient {
+
+    private final boolean compression;
+
+    private final long compressionThreshold;
+
+    /**
+     * @param restClientBuilder
+     * @param compression          是否压缩请求体并接受 gzip 响应
+     * @param compressionThreshold 小于该字节数的请求体不压缩
+     */
+    public CompressingRestHighLevelClient(RestClientBuilder restClientBuilder, boolean compression, long compressionThreshold) {
+        super(restClientBuilder);
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public long getCompressionThreshold() {
+        return compressionThreshold;
+    }
+}
@@ -5,53 +5,195 @@ import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.elasticsearch.client.NodeSelector;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 
+import java.io.Closeable;
 import java.util.Objects;
 
 /**
  * 类描述：Es http 初始化
  */
 
-public class ElasticClientDecorator {
+public class ElasticClientDecorator implements Closeable {
+
+    public static final String NODE_SELECTOR_ANY = "any";
+    public static final String NODE_SELECTOR_SKIP_DEDICATED_MASTERS = "skip-dedicated-masters";
+    public static final String NODE_SELECTOR_PREFER_DATA_INGEST = "prefer-data-ingest";
 
     private RestHighLevelClient restHighLevelClient;
     private RestClientBuilder builder;
-    private HttpHost httpHost;
+    private HttpHost[] httpHosts;
     private String userName;
     private String password;
 
+    /**
+     * 连接池 / 超时 / I/O 线程配置, 为 null 时使用客户端默认值
+     */
+    private ElasticsProperties properties;
+
+    /**
+     * 节点发现, 未开启时为 null
+     */
+    private Sniffer sniffer;
+
     public ElasticClientDecorator(HttpHost httpHost, String userName, String password) {
-        this.httpHost = httpHost;
+        this.httpHosts = new HttpHost[]{httpHost};
         this.userName = userName;
         this.password = password;
     }
 
+    public ElasticClientDecorator(HttpHost[] httpHosts, String userName, String password, ElasticsProperties properties) {
+        this.httpHosts = httpHosts;
+        this.userName = userName;
+        this.password = password;
+        this.properties = properties;
+    }
+
     public RestHighLevelClient getRestHighLevelClient() {
         if (Objects.nonNull(restHighLevelClient)) {
             return restHighLevelClient;
         }
 
-        if (StringUtils.isBlank(userName) || StringUtils.isBlank(password)) {
-            builder = RestClient.builder(httpHost);
-        } else {
-            setBuilder();
+        setBuilder();
+        SniffOnFailureListener sniffOnFailureListener = null;
+        if (isSniffEnabled()) {
+            sniffOnFailureListener = new SniffOnFailureListener();
+            builder.setFailureListener(sniffOnFailureListener);
         }
 
-        restHighLevelClient = new RestHighLevelClient(builder);
+        restHighLevelClient = isCompressionEnabled()
+                ? new CompressingRestHighLevelClient(builder, true,
+                ByteSizeValue.parseBytesSizeValue(properties.getCompressionThreshold(), "compression-threshold").getBytes())
+                : new RestHighLevelClient(builder);
+        if (Objects.nonNull(sniffOnFailureListener)) {
+            sniffer = buildSniffer(restHighLevelClient.getLowLevelClient());
+            sniffOnFailureListener.setSniffer(sniffer);
+        }
         return restHighLevelClient;
     }
 
+    /**
+     * 停止节点发现 (client 由容器单独关闭)
+     */
+    @Override
+    public void close() {
+        if (Objects.nonNull(sniffer)) {
+            sniffer.close();
+        }
+    }
+
     private void setBuilder() {
-        final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-        credentialsProvider.setCredentials(AuthScope.ANY,
-                new UsernamePasswordCredentials(userName, password));
-        builder = RestClient.builder(httpHost).
-                setHttpClientConfigCallback(httpClientBuilder ->
-                        httpClientBuilder.setDefaultCredentialsProvider(
-                                credentialsProvider));
+        final CredentialsProvider credentialsProvider;
+        if (StringUtils.isBlank(userName) || StringUtils.isBlank(password)) {
+            credentialsProvider = null;
+        } else {
+            credentialsProvider = new BasicCredentialsProvider();
+            credentialsProvider.setCredentials(AuthScope.ANY,
+                    new UsernamePasswordCredentials(userName, password));
+        }
+
+        builder = RestClient.builder(httpHosts).
+                setHttpClientConfigCallback(httpClientBuilder -> {
+                    if (Objects.nonNull(credentialsProvider)) {
+                        httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+                    }
+                    return configureHttpClient(httpClientBuilder);
+                });
+        if (Objects.nonNull(properties)) {
+            builder.setRequestConfigCallback(this::configureRequest)
+                    .setNodeSelector(nodeSelector(properties.getNodeSelector()));
+        }
+    }
+
+    private boolean isCompressionEnabled() {
+        return Objects.nonNull(properties) && Boolean.TRUE.equals(properties.getCompression());
+    }
+
+    private boolean isSniffEnabled() {
+        return Objects.nonNull(properties) && Boolean.TRUE.equals(properties.getSniff());
+    }
+
+    /**
+     * 定时从集群获取节点列表 (含角色), 请求失败时提前重新发现
+     *
+     * @param restClient
+     * @return
+     */
+    private Sniffer buildSniffer(RestClient restClient) {
+        ElasticsearchNodesSniffer.Scheme scheme = "https".equalsIgnoreCase(httpHosts[0].getSchemeName())
+                ? ElasticsearchNodesSniffer.Scheme.HTTPS : ElasticsearchNodesSniffer.Scheme.HTTP;
+        return Sniffer.builder(restClient)
+                .setSniffIntervalMillis((int) millis(properties.getSniffInterval(), "sniff-interval"))
+                .setSniffAfterFailureDelayMillis((int) millis(properties.getSniffAfterFailureDelay(), "sniff-after-failure-delay"))
+                .setNodesSniffer(new ElasticsearchNodesSniffer(restClient, ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT, scheme))
+                .build();
+    }
+
+    private static NodeSelector nodeSelector(String name) {
+        if (StringUtils.isBlank(name) || NODE_SELECTOR_PREFER_DATA_INGEST.equals(name)) {
+            return PreferredNodeSelector.INSTANCE;
+        } else if (NODE_SELECTOR_SKIP_DEDICATED_MASTERS.equals(name)) {
+            return NodeSelector.SKIP_DEDICATED_MASTERS;
+        } else if (NODE_SELECTOR_ANY.equals(name)) {
+            return NodeSelector.ANY;
+        }
+
+        throw new IllegalArgumentException("未知的 node-selector: " + name);
+    }
+
+    /**
+     * 连接池大小 / I/O 线程数 / 空闲连接保留时间
+     *
+     * @param httpClientBuilder
+     * @return
+     */
+    private HttpAsyncClientBuilder configureHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
+        if (Objects.isNull(properties)) {
+            return httpClientBuilder;
+        }
+
+        long keepAlive = millis(properties.getKeepAlive(), "keep-alive");
+        return httpClientBuilder
+                .setMaxConnTotal(properties.getMaxConnTotal())
+                .setMaxConnPerRoute(properties.getMaxConnPerRoute())
+                .setDefaultIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(properties.getIoThreadCount())
+                        .setSoKeepAlive(true)
+                        .build())
+                // 服务端返回 Keep-Alive 时取两者较小值, 否则使用配置值 (默认策略为永久保留, 连接会被负载均衡静默断开)
+                .setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive) : keepAlive;
+                });
+    }
+
+    /**
+     * 连接 / 读取 / 获取连接 超时
+     *
+     * @param requestConfigBuilder
+     * @return
+     */
+    private RequestConfig.Builder configureRequest(RequestConfig.Builder requestConfigBuilder) {
+        return requestConfigBuilder
+                .setConnectTimeout((int) millis(properties.getConnectTimeout(), "connect-timeout"))
+                .setSocketTimeout((int) millis(properties.getSocketTimeout(), "socket-timeout"))
+                .setConnectionRequestTimeout((int) millis(properties.getConnectionRequestTimeout(), "connection-request-timeout"));
+    }
+
+    private static long millis(String value, String settingName) {
+        return TimeValue.parseTimeValue(value, settingName).millis();
     }
 }
@@ -1,7 +1,16 @@
 package com.spring.es.config.es;
 
+import com.spring.es.plugin.AsyncBulkExecutor;
+import com.spring.es.plugin.BulkIngester;
+import com.spring.es.plugin.BulkRetryPolicy;
+import com.spring.es.plugin.MultiSearchBatcher;
+import com.spring.es.plugin.SearchExecutor;
+import com.spring.es.plugin.SearchResultCache;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpHost;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -30,8 +39,84 @@ public class ElasticsConfig {
     @Bean
     @Scope("singleton")
     public ElasticClientDecorator getEsClientDecorator() {
-        return new ElasticClientDecorator(new HttpHost(elasticsProperties.getClusterNodes(), elasticsProperties.getPort()), elasticsProperties.getUserName(), elasticsProperties.getPassword());
+        return new ElasticClientDecorator(clusterHosts(), elasticsProperties.getUserName(), elasticsProperties.getPassword(), elasticsProperties);
     }
 
+    /**
+     * 解析节点列表 (逗号分隔, 未指定端口时使用 port)
+     */
+    private HttpHost[] clusterHosts() {
+        String[] nodes = StringUtils.split(elasticsProperties.getClusterNodes(), ',');
+        HttpHost[] hosts = new HttpHost[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            HttpHost host = HttpHost.create(nodes[i].trim());
+            hosts[i] = host.getPort() < 0 ? new HttpHost(host.getHostName(), elasticsProperties.getPort(), host.getSchemeName()) : host;
+        }
+
+        return hosts;
+    }
+
+    /**
+     * 后台批量写入器 (容器关闭时提交剩余数据)
+     */
+    @Bean(destroyMethod = "close")
+    public BulkIngester bulkIngester(RestHighLevelClient restHighLevelClient) {
+        return new BulkIngester(restHighLevelClient,
+                elasticsProperties.getBulkActions(),
+                ByteSizeValue.parseBytesSizeValue(elasticsProperties.getBulkSize(), "bulk-size"),
+                TimeValue.parseTimeValue(elasticsProperties.getBulkFlushInterval(), "bulk-flush-interval"),
+                elasticsProperties.getBulkConcurrentRequests(),
+                bulkRetryPolicy());
+    }
+
+    /**
+     * 带背压的异步 bulk 提交
+     */
+    @Bean(destroyMethod = "close")
+    public AsyncBulkExecutor asyncBulkExecutor(RestHighLevelClient restHighLevelClient) {
+        return new AsyncBulkExecutor(restHighLevelClient,
+                elasticsProperties.getBulkMaxOutstandingRequests(),
+                ByteSizeValue.parseBytesSizeValue(elasticsProperties.getBulkMaxOutstandingSize(), "bulk-max-outstanding-size"),
+                bulkRetryPolicy());
+    }
+
+    /**
+     * 带截止时间与对冲请求的查询
+     */
+    @Bean(destroyMethod = "close")
+    public SearchExecutor searchExecutor(RestHighLevelClient restHighLevelClient) {
+        return new SearchExecutor(restHighLevelClient,
+                TimeValue.parseTimeValue(elasticsProperties.getSearchTimeout(), "search-timeout"),
+                Boolean.TRUE.equals(elasticsProperties.getSearchHedge()),
+                TimeValue.parseTimeValue(elasticsProperties.getSearchHedgeMinDelay(), "search-hedge-min-delay"));
+    }
+
+    /**
+     * 并发查询合并为 _msearch
+     */
+    @Bean(destroyMethod = "close")
+    public MultiSearchBatcher multiSearchBatcher(RestHighLevelClient restHighLevelClient) {
+        return new MultiSearchBatcher(restHighLevelClient,
+                elasticsProperties.getMsearchBatchSize(),
+                TimeValue.parseTimeValue(elasticsProperties.getMsearchWindow(), "msearch-window"));
+    }
+
+    /**
+     * 查询结果缓存 (未开启时不缓存)
+     */
+    @Bean
+    public SearchResultCache searchResultCache() {
+        return new SearchResultCache(Boolean.TRUE.equals(elasticsProperties.getSearchCache()) ? elasticsProperties.getSearchCacheSize() : 0);
+    }
+
+    /**
+     * bulk 失败条目重试策略
+     */
+    @Bean
+    public BulkRetryPolicy bulkRetryPolicy() {
+        return new BulkRetryPolicy(elasticsProperties.getBulkMaxRetries(),
+                TimeValue.parseTimeValue(elasticsProperties.getBulkRetryInitialDelay(), "bulk-retry-initial-delay").millis(),
+                TimeValue.parseTimeValue(elasticsProperties.getBulkRetryMaxDelay(), "bulk-retry-max-delay").millis());
+    }
 
 }
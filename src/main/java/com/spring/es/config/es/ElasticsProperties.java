@@ -1,5 +1,6 @@
 package com.spring.es.config.es;
 
+import com.spring.es.plugin.BulkRetryPolicy;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -16,15 +17,35 @@ public class ElasticsProperties {
     private String clusterName;
 
     /**
-     * 节点
+     * 节点 (逗号分隔, host / host:port / scheme://host:port)
      */
     private String clusterNodes;
 
     /**
-     * 端口号
+     * 端口号 (节点未指定端口时使用)
      */
     private Integer port;
 
+    /**
+     * 请求节点选择: any / skip-dedicated-masters / prefer-data-ingest
+     */
+    private String nodeSelector = ElasticClientDecorator.NODE_SELECTOR_PREFER_DATA_INGEST;
+
+    /**
+     * 是否定时从集群发现节点 (sniff)
+     */
+    private Boolean sniff = false;
+
+    /**
+     * 节点发现间隔
+     */
+    private String sniffInterval = "5m";
+
+    /**
+     * 请求失败后 重新发现节点的延迟
+     */
+    private String sniffAfterFailureDelay = "1m";
+
     /**
      * 用户名
      */
@@ -35,5 +56,174 @@ public class ElasticsProperties {
      */
     private String password;
 
+    /**
+     * 连接池 最大连接数
+     */
+    private Integer maxConnTotal = 100;
+
+    /**
+     * 连接池 每个节点最大连接数
+     */
+    private Integer maxConnPerRoute = 50;
+
+    /**
+     * http I/O 线程数
+     */
+    private Integer ioThreadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 空闲连接保留时间 (服务端未返回 Keep-Alive 时使用, 应小于负载均衡的空闲超时)
+     */
+    private String keepAlive = "5m";
+
+    /**
+     * 建立连接超时
+     */
+    private String connectTimeout = "1s";
+
+    /**
+     * 读取响应超时 (客户端含节点重试的总时长上限固定为 90s, 不应超过)
+     */
+    private String socketTimeout = "60s";
+
+    /**
+     * 从连接池获取连接超时
+     */
+    private String connectionRequestTimeout = "1s";
+
+    /**
+     * 是否 gzip 压缩请求体, 并对 search / scroll / bulk 请求 gzip 响应 (需 ES 开启 http.compression)
+     */
+    private Boolean compression = false;
+
+    /**
+     * 小于该大小的请求体不压缩
+     */
+    private String compressionThreshold = "1kb";
+
+    /**
+     * 批量写入 单次 bulk 最大条数
+     */
+    private Integer bulkActions = 1000;
+
+    /**
+     * 批量写入 单次 bulk 最大字节数
+     */
+    private String bulkSize = "5mb";
+
+    /**
+     * 批量写入 最长刷新间隔
+     */
+    private String bulkFlushInterval = "5s";
+
+    /**
+     * 批量写入 同时在途的 bulk 数量
+     */
+    private Integer bulkConcurrentRequests = 2;
+
+    /**
+     * 批量写入 失败条目最大重试次数
+     */
+    private Integer bulkMaxRetries = BulkRetryPolicy.DEFAULT_MAX_RETRIES;
+
+    /**
+     * 批量写入 重试初始等待时间
+     */
+    private String bulkRetryInitialDelay = "100ms";
+
+    /**
+     * 批量写入 重试最大等待时间
+     */
+    private String bulkRetryMaxDelay = "10s";
+
+    /**
+     * 异步 bulk 最大在途请求数
+     */
+    private Integer bulkMaxOutstandingRequests = 4;
+
+    /**
+     * 异步 bulk 最大在途字节数
+     */
+    private String bulkMaxOutstandingSize = "50mb";
+
+    /**
+     * 写入流水线 每个阶段的队列容量
+     */
+    private Integer pipelineQueueCapacity = 10000;
+
+    /**
+     * 写入流水线 解析线程数
+     */
+    private Integer pipelineParseWorkers = 2;
+
+    /**
+     * 写入流水线 序列化线程数
+     */
+    private Integer pipelineSerializeWorkers = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 票价去重缓存 最大条目数
+     */
+    private Integer dedupeCacheSize = 262144;
+
+    /**
+     * 票价去重缓存 有效期 (期间内价格 / 舱位数未变化的重复票价只刷新时间戳, 不再发送完整文档)
+     */
+    private String dedupeCacheTtl = "30m";
+
+    /**
+     * 数据保留时长 (早于 now - retention 的分区 / 数据被清理)
+     */
+    private String retention = "5d";
+
+    /**
+     * 数据保留清理 执行周期 (cron)
+     */
+    private String retentionCron = "0 10 * * * ?";
+
+    /**
+     * 清理时是否合并最近一个已结束的分区
+     */
+    private Boolean retentionForceMerge = true;
+
+    /**
+     * 未分区索引清理时 delete-by-query 每秒删除条数上限
+     */
+    private Float retentionRequestsPerSecond = 1000f;
+
+    /**
+     * 查询默认截止时间
+     */
+    private String searchTimeout = "2s";
+
+    /**
+     * 查询在最近耗时 p95 内未返回时, 是否向另一节点发送对冲请求
+     */
+    private Boolean searchHedge = false;
+
+    /**
+     * 对冲延迟下限
+     */
+    private String searchHedgeMinDelay = "20ms";
+
+    /**
+     * 合并查询 单次 _msearch 最多查询数
+     */
+    private Integer msearchBatchSize = 64;
+
+    /**
+     * 合并查询 等待窗口 (第一个查询到达后最多等待多久)
+     */
+    private String msearchWindow = "5ms";
+
+    /**
+     * 是否缓存查询结果 (有效期为实体的 refreshInterval)
+     */
+    private Boolean searchCache = false;
+
+    /**
+     * 查询结果缓存 最大条目数
+     */
+    private Integer searchCacheSize = 10000;
 
 }
@@ -0,0 +1,81 @@
+package com.spring.es.config.es;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.HeapBufferedAsyncResponseConsumer;
+import org.elasticsearch.client.HttpAsyncResponseConsumerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 类描述：响应解压
+ * <p>
+ * 当前 rest client 不会解压响应 (异步客户端的响应拦截器在读取响应体之前执行, 无法替换实体),
+ * 因此在响应体缓冲完成后解压; 配合 Accept-Encoding: gzip 请求头使用, 未压缩的响应原样返回
+ */
+public class GzipResponseConsumerFactory implements HttpAsyncResponseConsumerFactory {
+
+    public static final String GZIP = "gzip";
+
+    /**
+     * 与默认工厂一致的缓冲上限 (压缩后字节数)
+     */
+    public static final int DEFAULT_BUFFER_LIMIT = 100 * 1024 * 1024;
+
+    private final int bufferLimit;
+
+    public GzipResponseConsumerFactory(int bufferLimit) {
+        this.bufferLimit = bufferLimit;
+    }
+
+    @Override
+    public HttpAsyncResponseConsumer<HttpResponse> createHttpAsyncResponseConsumer() {
+        return new GzipResponseConsumer(bufferLimit);
+    }
+
+    private static final class GzipResponseConsumer extends HeapBufferedAsyncResponseConsumer {
+
+        private GzipResponseConsumer(int bufferLimit) {
+            super(bufferLimit);
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) throws Exception {
+            HttpResponse response = super.buildResult(context);
+            Header contentEncoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+            HttpEntity entity = response.getEntity();
+            if (Objects.isNull(contentEncoding) || Objects.isNull(entity)
+                    || !GZIP.equalsIgnoreCase(contentEncoding.getValue())) {
+                return response;
+            }
+
+            response.setEntity(new ByteArrayEntity(inflate(EntityUtils.toByteArray(entity)), ContentType.get(entity)));
+            response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+            response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+            return response;
+        }
+
+        private static byte[] inflate(byte[] compressed) throws IOException {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream(compressed.length * 4);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = gzip.read(buffer)) > 0) {
+                    output.write(buffer, 0, read);
+                }
+                return output.toByteArray();
+            }
+        }
+    }
+}
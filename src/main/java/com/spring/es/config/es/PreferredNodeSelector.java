@@ -0,0 +1,52 @@
+package com.spring.es.config.es;
+
+import org.elasticsearch.client.Node;
+import org.elasticsearch.client.NodeSelector;
+
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * 类描述：请求节点选择
+ * <p>
+ * 跳过专用 master 节点; 存在 data / ingest 节点时只向这些节点发送请求 (由其协调查询与写入).
+ * 节点角色只有通过 sniff 发现的节点才已知, 角色未知的节点不做过滤
+ */
+public class PreferredNodeSelector implements NodeSelector {
+
+    public static final PreferredNodeSelector INSTANCE = new PreferredNodeSelector();
+
+    @Override
+    public void select(Iterable<Node> nodes) {
+        boolean hasPreferred = false;
+        for (Node node : nodes) {
+            if (isDataOrIngest(node)) {
+                hasPreferred = true;
+                break;
+            }
+        }
+
+        Iterator<Node> iterator = nodes.iterator();
+        while (iterator.hasNext()) {
+            Node node = iterator.next();
+            if (isDedicatedMaster(node) || (hasPreferred && !isDataOrIngest(node))) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean isDataOrIngest(Node node) {
+        Node.Roles roles = node.getRoles();
+        return Objects.nonNull(roles) && (roles.isData() || roles.isIngest());
+    }
+
+    private static boolean isDedicatedMaster(Node node) {
+        Node.Roles roles = node.getRoles();
+        return Objects.nonNull(roles) && roles.isMasterEligible() && !roles.isData() && !roles.isIngest();
+    }
+
+    @Override
+    public String toString() {
+        return "PREFER_DATA_INGEST";
+    }
+}
@@ -1,11 +1,22 @@
 package com.spring.es.controller;
 
+import com.spring.es.plugin.DeleteByQueryProgress;
+import com.spring.es.plugin.RetentionReport;
+import com.spring.es.plugin.pipeline.StageMetrics;
 import com.spring.es.service.IndexService;
+import com.spring.es.service.RetentionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * 类描述：
 
@@ -18,10 +29,57 @@ public class IndexController {
     @Autowired
     private IndexService indexService;
 
+    @Autowired
+    private RetentionService retentionService;
+
     @GetMapping
     private String initData() {
 //        indexService.insertDataToIndex();
         return "成功";
     }
 
+    /**
+     * 写入流水线 各阶段指标
+     */
+    @GetMapping("/pipeline/metrics")
+    public List<StageMetrics> pipelineMetrics() {
+        return indexService.ingestPipelineMetrics();
+    }
+
+    /**
+     * 立即执行一次过期数据清理
+     */
+    @PostMapping("/retention")
+    public RetentionReport retention() throws IOException {
+        return retentionService.purgeExpired();
+    }
+
+    /**
+     * 后台删除任务进度
+     */
+    @GetMapping("/retention/task/{taskId}")
+    public ResponseEntity<DeleteByQueryProgress> deleteTaskProgress(@PathVariable String taskId) throws IOException {
+        return retentionService.deleteTaskProgress(taskId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 取消后台删除任务
+     */
+    @PostMapping("/retention/task/{taskId}/cancel")
+    public String cancelDeleteTask(@PathVariable String taskId) throws IOException {
+        retentionService.cancelDeleteTask(taskId);
+        return "成功";
+    }
+
+    /**
+     * 调整后台删除任务限速
+     */
+    @PostMapping("/retention/task/{taskId}/rethrottle")
+    public String rethrottleDeleteTask(@PathVariable String taskId, @RequestParam float requestsPerSecond) throws IOException {
+        retentionService.rethrottleDeleteTask(taskId, requestsPerSecond);
+        return "成功";
+    }
+
 }
@@ -3,6 +3,7 @@ package com.spring.es.init;
 import com.spring.es.model.entity.TrafficInfo;
 import com.spring.es.plugin.IndexBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchStatusException;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
@@ -31,12 +32,11 @@ public class StartListener implements ApplicationRunner {
     public void run(ApplicationArguments args) {
         // 初始化索引 和 type */
         try {
-            if (!IndexBuilder.isIndexExists(restHighLevelClient, IndexBuilder.getIndexName(TrafficInfo.class))) {
-                log.info("初始化航班索引: {}", IndexBuilder.getIndexName(TrafficInfo.class));
-                IndexBuilder.createIndex(restHighLevelClient, TrafficInfo.class, IndexBuilder.getIndexName(TrafficInfo.class));
-            }
-        } catch (IOException e) {
-            log.error("创建索引失败");
+            log.info("初始化航班索引: {}", IndexBuilder.getIndexName(TrafficInfo.class));
+            IndexBuilder.initIndex(restHighLevelClient, TrafficInfo.class);
+        } catch (IOException | ElasticsearchStatusException e) {
+            // 如已存在与别名同名的索引时无法创建别名
+            log.error("创建索引失败", e);
         }
     }
 
@@ -1,8 +1,10 @@
 package com.spring.es.model.entity;
 
 import com.spring.es.constants.IndexConstants;
+import com.spring.es.plugin.annotations.CompositeId;
 import com.spring.es.plugin.annotations.Document;
 import com.spring.es.plugin.annotations.FieldType;
+import com.spring.es.plugin.annotations.Partition;
 import com.spring.es.plugin.annotations.Property;
 import lombok.Getter;
 import lombok.Setter;
@@ -13,7 +15,9 @@ import lombok.Setter;
 
 @Getter
 @Setter
-@Document(indexName = IndexConstants.TRAFFIC_INDEX_NAME, type = IndexConstants.TRAFFIC_TYPE_NAME, shards = 1, replicas = 0, refreshInterval = "2s")
+@CompositeId(fields = {"siteStartAndEnd", "departureDate", "flightNumber", "classCode"})
+@Document(indexName = IndexConstants.TRAFFIC_INDEX_NAME, type = IndexConstants.TRAFFIC_TYPE_NAME, shards = 1, replicas = 0, refreshInterval = "2s",
+        partition = Partition.MONTHLY, timestampField = "departureDate", expireField = "createTime")
 public class TrafficInfo {
 
     /**
@@ -0,0 +1,192 @@
+package com.spring.es.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类描述：带背压的异步 bulk 提交
+ * <p>
+ * 同时在途的 bulk 数量与字节数各由一个信号量限制, 额度用尽时:
+ * submit 阻塞调用线程直到有 bulk 完成; trySubmit 等待超时后直接拒绝,
+ * 避免生产方无限制地向 http client 的 I/O 线程堆积请求
+ * <p>
+ * 字节额度按 KB 计, 单个超过总额度的 bulk 只占满全部额度, 不会永久阻塞
+ */
+@Slf4j
+public class AsyncBulkExecutor implements Closeable {
+
+    /**
+     * 关闭时等待在途 bulk 完成的最长时间
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final BulkRetryHandler retryHandler;
+    private final ScheduledExecutorService retryScheduler;
+
+    private final Semaphore requestPermits;
+    private final Semaphore kilobytePermits;
+    private final int maxOutstandingRequests;
+    private final int maxOutstandingKilobytes;
+
+    private volatile boolean closed;
+
+    /**
+     * @param client
+     * @param maxOutstandingRequests 最大在途 bulk 数
+     * @param maxOutstandingSize     最大在途字节数
+     * @param retryPolicy            失败条目重试策略
+     */
+    public AsyncBulkExecutor(RestHighLevelClient client, int maxOutstandingRequests, ByteSizeValue maxOutstandingSize, BulkRetryPolicy retryPolicy) {
+        if (maxOutstandingRequests <= 0 || maxOutstandingSize.getKb() <= 0) {
+            throw new IllegalArgumentException("在途额度必须大于 0");
+        }
+        this.retryScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "async-bulk-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retryHandler = new BulkRetryHandler(client, retryPolicy, retryScheduler);
+        this.requestPermits = new Semaphore(maxOutstandingRequests, true);
+        this.maxOutstandingRequests = maxOutstandingRequests;
+        this.maxOutstandingKilobytes = (int) Math.min(Integer.MAX_VALUE, maxOutstandingSize.getKb());
+        this.kilobytePermits = new Semaphore(maxOutstandingKilobytes, true);
+    }
+
+    /**
+     * 提交 bulk, 额度不足时阻塞
+     *
+     * @param request
+     * @return 重试结束后的结果; 整个请求失败时异常结束
+     * @throws InterruptedException 等待额度时被中断
+     */
+    public CompletableFuture<BulkResult> submit(BulkRequest request) throws InterruptedException {
+        int kilobytes = kilobytes(request);
+        requestPermits.acquire();
+        try {
+            kilobytePermits.acquire(kilobytes);
+        } catch (InterruptedException e) {
+            requestPermits.release();
+            throw e;
+        }
+
+        return execute(request, kilobytes);
+    }
+
+    /**
+     * 提交 bulk, 额度不足时最多等待 timeout, 仍不足则拒绝
+     *
+     * @param request
+     * @param timeout
+     * @param unit
+     * @return 被拒绝时以 EsRejectedExecutionException 异常结束
+     */
+    public CompletableFuture<BulkResult> trySubmit(BulkRequest request, long timeout, TimeUnit unit) {
+        int kilobytes = kilobytes(request);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            if (!requestPermits.tryAcquire(timeout, unit)) {
+                return rejected("在途 bulk 数已达上限");
+            }
+            if (!kilobytePermits.tryAcquire(kilobytes, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                requestPermits.release();
+                return rejected("在途 bulk 字节数已达上限");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return rejected("等待 bulk 额度被中断");
+        }
+
+        return execute(request, kilobytes);
+    }
+
+    /**
+     * 当前可用的 bulk 名额
+     *
+     * @return
+     */
+    public int availableRequests() {
+        return requestPermits.availablePermits();
+    }
+
+    /**
+     * 拒绝新的 bulk, 并等待在途 bulk (含重试) 完成后归还全部名额
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean drained = false;
+        try {
+            drained = requestPermits.tryAcquire(maxOutstandingRequests, CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!drained) {
+                log.warn("异步 bulk 关闭超时, 仍有 {} 个 bulk 未完成", maxOutstandingRequests - requestPermits.availablePermits());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("异步 bulk 关闭被中断");
+        } finally {
+            if (drained) {
+                // 唤醒仍在等待额度的提交方, 由其按已关闭拒绝
+                requestPermits.release(maxOutstandingRequests);
+            }
+            retryScheduler.shutdown();
+        }
+    }
+
+    private CompletableFuture<BulkResult> execute(BulkRequest request, int kilobytes) {
+        if (closed) {
+            release(kilobytes);
+            return rejected("异步 bulk 已关闭");
+        }
+
+        CompletableFuture<BulkResult> future = new CompletableFuture<>();
+        try {
+            retryHandler.executeAsync(request, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse response) {
+                    release(kilobytes);
+                    future.complete(BulkResult.of(request, response));
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    release(kilobytes);
+                    log.error("bulk 提交失败: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            release(kilobytes);
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private void release(int kilobytes) {
+        kilobytePermits.release(kilobytes);
+        requestPermits.release();
+    }
+
+    private int kilobytes(BulkRequest request) {
+        long kilobytes = (request.estimatedSizeInBytes() + 1023) / 1024;
+        return (int) Math.max(1, Math.min(maxOutstandingKilobytes, kilobytes));
+    }
+
+    private static CompletableFuture<BulkResult> rejected(String message) {
+        CompletableFuture<BulkResult> future = new CompletableFuture<>();
+        future.completeExceptionally(new EsRejectedExecutionException(message));
+        return future;
+    }
+}
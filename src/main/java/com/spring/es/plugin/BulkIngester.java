@@ -0,0 +1,162 @@
+package com.spring.es.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.io.Closeable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 类描述：后台批量写入器
+ * <p>
+ * 逐条接收写请求, 满足以下任一条件时自动提交一次 bulk:
+ * 1. 缓存条数达到 bulkActions
+ * 2. 缓存字节数达到 bulkSize
+ * 3. 距上次提交超过 flushInterval
+ * <p>
+ * concurrentRequests 控制同时在途的 bulk 数量, 为 0 时同步提交 (add 会阻塞直到提交完成)
+ * <p>
+ * 被集群拒绝的条目按 {@link BulkRetryPolicy} 单独重试, 重试期间该 bulk 仍占用在途名额
+ */
+@Slf4j
+public class BulkIngester implements Closeable {
+
+    /**
+     * 关闭时等待在途 bulk 完成的最长时间
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final BulkProcessor bulkProcessor;
+
+    /**
+     * 重试延时调度
+     */
+    private final ScheduledExecutorService retryScheduler;
+
+    private final AtomicLong submittedActions = new AtomicLong();
+    private final AtomicLong failedActions = new AtomicLong();
+
+    /**
+     * @param client
+     * @param bulkActions        单次 bulk 最大条数
+     * @param bulkSize           单次 bulk 最大字节数
+     * @param flushInterval      最长刷新间隔
+     * @param concurrentRequests 同时在途的 bulk 数量
+     * @param retryPolicy        失败条目重试策略
+     */
+    public BulkIngester(RestHighLevelClient client, int bulkActions, ByteSizeValue bulkSize, TimeValue flushInterval,
+                        int concurrentRequests, BulkRetryPolicy retryPolicy) {
+        this.retryScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-ingester-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BulkRetryHandler retryHandler = new BulkRetryHandler(client, retryPolicy, retryScheduler);
+        this.bulkProcessor = BulkProcessor.builder(retryHandler::executeAsync, new IngestListener())
+                .setBulkActions(bulkActions)
+                .setBulkSize(bulkSize)
+                .setFlushInterval(flushInterval)
+                .setConcurrentRequests(concurrentRequests)
+                .setBackoffPolicy(BackoffPolicy.noBackoff())
+                .build();
+    }
+
+    /**
+     * 添加单条写请求
+     *
+     * @param request
+     * @return
+     */
+    public BulkIngester add(DocWriteRequest<?> request) {
+        bulkProcessor.add(request);
+        return this;
+    }
+
+    /**
+     * 实体写入口: 每个实体序列化为新增请求后直接进入缓冲,
+     * 上游 (如流式解析) 无需先收集成 List, 内存占用只与单个 bulk 大小相关
+     *
+     * @param clazz Document 实体类
+     * @param <T>
+     * @return
+     */
+    public <T> Consumer<T> sink(Class<T> clazz) {
+        DocumentSerializer<T> serializer = DocumentSerializer.of(clazz);
+        return entity -> add(serializer.toIndexRequest(entity));
+    }
+
+    /**
+     * 立即提交当前缓存的请求
+     */
+    public void flush() {
+        bulkProcessor.flush();
+    }
+
+    public long getSubmittedActions() {
+        return submittedActions.get();
+    }
+
+    public long getFailedActions() {
+        return failedActions.get();
+    }
+
+    /**
+     * 提交剩余请求 并等待在途 bulk 完成
+     */
+    @Override
+    public void close() {
+        try {
+            if (!bulkProcessor.awaitClose(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("批量写入器关闭超时, 仍有 bulk 未完成");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("批量写入器关闭被中断");
+        } finally {
+            retryScheduler.shutdown();
+        }
+    }
+
+    private class IngestListener implements BulkProcessor.Listener {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            log.debug("bulk[{}] 提交条数: {}, 字节数: {}", executionId, request.numberOfActions(), request.estimatedSizeInBytes());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            submittedActions.addAndGet(request.numberOfActions());
+            if (!response.hasFailures()) {
+                return;
+            }
+
+            // 此时已完成重试, 剩余失败条目不再提交
+            for (BulkItemResponse item : response) {
+                if (item.isFailed()) {
+                    failedActions.incrementAndGet();
+                    log.error("bulk[{}] 新增错误: {}", executionId, item.getFailureMessage());
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            submittedActions.addAndGet(request.numberOfActions());
+            failedActions.addAndGet(request.numberOfActions());
+            log.error("bulk[{}] 提交失败: {}", executionId, failure.getMessage());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.spring.es.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 类描述：批量导入模式
+ * <p>
+ * 导入期间关闭自动刷新 (refresh_interval = -1) 并将副本数置 0,
+ * 避免频繁生成 segment 以及副本重复写入; 关闭时恢复 Document 注解中的配置并统一刷新一次
+ * <p>
+ * 导入期间写入的数据不可搜索, 写请求应使用 RefreshPolicy.NONE
+ * <p>
+ * 分区索引通过别名进入时, 同时以导入配置覆盖分区模板, 导入期间新建的分区同样生效; 关闭时恢复模板
+ *
+ * <pre>
+ * try (BulkLoadMode ignored = BulkLoadMode.begin(client, TrafficInfo.class)) {
+ *     // 批量写入
+ * }
+ * </pre>
+ */
+@Slf4j
+public class BulkLoadMode implements Closeable {
+
+    private final RestHighLevelClient client;
+    private final Class<?> clazz;
+    private final String indexName;
+
+    private BulkLoadMode(RestHighLevelClient client, Class<?> clazz, String indexName) {
+        this.client = client;
+        this.clazz = clazz;
+        this.indexName = indexName;
+    }
+
+    /**
+     * 进入批量导入模式
+     *
+     * @param client
+     * @param clazz
+     * @return
+     * @throws IOException
+     */
+    public static BulkLoadMode begin(RestHighLevelClient client, Class<?> clazz) throws IOException {
+        return begin(client, clazz, IndexBuilder.getIndexName(clazz));
+    }
+
+    /**
+     * 进入批量导入模式
+     *
+     * @param client
+     * @param clazz     用于恢复配置的 Document 类
+     * @param indexName
+     * @return
+     * @throws IOException
+     */
+    public static BulkLoadMode begin(RestHighLevelClient client, Class<?> clazz, String indexName) throws IOException {
+        if (isPartitionAlias(clazz, indexName)) {
+            IndexBuilder.putIndexTemplate(client, clazz, IndexBuilder.REFRESH_INTERVAL_DISABLED, 0);
+        }
+        IndexBuilder.updateIndexSettings(client, indexName, IndexBuilder.REFRESH_INTERVAL_DISABLED, 0);
+        log.info("索引 {} 进入批量导入模式", indexName);
+        return new BulkLoadMode(client, clazz, indexName);
+    }
+
+    /**
+     * 恢复配置 并刷新一次
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (isPartitionAlias(clazz, indexName)) {
+            IndexBuilder.putIndexTemplate(client, clazz);
+        }
+        // 通过别名恢复时包含导入期间新建的分区
+        IndexBuilder.restoreIndexSettings(client, clazz, indexName);
+        IndexBuilder.refreshIndex(client, indexName);
+        log.info("索引 {} 退出批量导入模式", indexName);
+    }
+
+    private static boolean isPartitionAlias(Class<?> clazz, String indexName) {
+        EntityMetadata metadata = EntityMetadata.of(clazz);
+        return metadata.isPartitioned() && metadata.getIndexName().equals(indexName);
+    }
+}
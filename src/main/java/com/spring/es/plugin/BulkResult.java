@@ -0,0 +1,123 @@
+package com.spring.es.plugin;
+
+import lombok.Getter;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.rest.RestStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 类描述：bulk 最终结果 (重试结束后仍失败的条目)
+ */
+@Getter
+public class BulkResult {
+
+    /**
+     * 提交条数
+     */
+    private final int total;
+
+    /**
+     * 耗时 (毫秒, 含重试等待)
+     */
+    private final long tookInMillis;
+
+    /**
+     * 最终失败的条目
+     */
+    private final List<FailedItem> failedItems;
+
+    public BulkResult(int total, long tookInMillis, List<FailedItem> failedItems) {
+        this.total = total;
+        this.tookInMillis = tookInMillis;
+        this.failedItems = Collections.unmodifiableList(failedItems);
+    }
+
+    /**
+     * 根据请求与 (合并后的) 响应生成结果
+     *
+     * @param request
+     * @param response
+     * @return
+     */
+    public static BulkResult of(BulkRequest request, BulkResponse response) {
+        List<DocWriteRequest<?>> requests = request.requests();
+        List<FailedItem> failedItems = new ArrayList<>();
+        for (BulkItemResponse item : response) {
+            if (item.isFailed()) {
+                failedItems.add(new FailedItem(requests.get(item.getItemId()), item.getFailure().getStatus(), item.getFailureMessage()));
+            }
+        }
+
+        return new BulkResult(requests.size(), response.getTook().millis(), failedItems);
+    }
+
+    /**
+     * 整个 bulk 请求失败 (如连接异常)
+     *
+     * @param request
+     * @param cause   请求异常; 集群返回错误 (ElasticsearchException) 时取其状态码, 否则状态码为 null
+     * @return
+     */
+    public static BulkResult failed(BulkRequest request, Throwable cause) {
+        Throwable unwrapped = cause instanceof CompletionException && Objects.nonNull(cause.getCause()) ? cause.getCause() : cause;
+        RestStatus status = unwrapped instanceof ElasticsearchException ? ((ElasticsearchException) unwrapped).status() : null;
+        List<FailedItem> failedItems = new ArrayList<>();
+        for (DocWriteRequest<?> docWriteRequest : request.requests()) {
+            failedItems.add(new FailedItem(docWriteRequest, status, unwrapped.toString(), unwrapped));
+        }
+
+        return new BulkResult(failedItems.size(), 0, failedItems);
+    }
+
+    public int getSucceeded() {
+        return total - failedItems.size();
+    }
+
+    public boolean hasFailures() {
+        return !failedItems.isEmpty();
+    }
+
+    /**
+     * 失败条目
+     */
+    @Getter
+    public static class FailedItem {
+
+        /**
+         * 原始写请求 (可用于落盘或人工补偿)
+         */
+        private final DocWriteRequest<?> request;
+
+        /**
+         * 状态码, 请求未得到集群响应 (如连接异常) 时为 null
+         */
+        private final RestStatus status;
+
+        private final String message;
+
+        /**
+         * 整个请求失败时的原始异常, 单条失败时为 null
+         */
+        private final Throwable cause;
+
+        public FailedItem(DocWriteRequest<?> request, RestStatus status, String message) {
+            this(request, status, message, null);
+        }
+
+        public FailedItem(DocWriteRequest<?> request, RestStatus status, String message, Throwable cause) {
+            this.request = request;
+            this.status = status;
+            this.message = message;
+            this.cause = cause;
+        }
+    }
+}
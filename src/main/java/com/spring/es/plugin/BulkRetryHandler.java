@@ -0,0 +1,191 @@
+package com.spring.es.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类描述：bulk 单条失败重试
+ * <p>
+ * 只重新提交可重试 (429 / 503 等) 的失败条目, 不重发整个 bulk;
+ * 重试结果按原始位置合并回响应, 调用方看到的 BulkResponse 与原请求一一对应
+ */
+@Slf4j
+public class BulkRetryHandler {
+
+    private final RestHighLevelClient client;
+    private final BulkRetryPolicy policy;
+
+    /**
+     * 异步重试的延时调度器 (仅 executeAsync 需要)
+     */
+    private final ScheduledExecutorService scheduler;
+
+    public BulkRetryHandler(RestHighLevelClient client, BulkRetryPolicy policy) {
+        this(client, policy, null);
+    }
+
+    public BulkRetryHandler(RestHighLevelClient client, BulkRetryPolicy policy, ScheduledExecutorService scheduler) {
+        this.client = client;
+        this.policy = policy;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * 同步提交 (重试等待期间阻塞当前线程)
+     *
+     * @param request
+     * @return 合并重试结果后的响应
+     * @throws IOException 首次提交失败
+     */
+    public BulkResponse execute(BulkRequest request) throws IOException {
+        long startTime = System.nanoTime();
+        BulkItemResponse[] items = GzipBulkClient.bulk(client, request).getItems();
+
+        for (int retry = 0; retry < policy.getMaxRetries(); retry++) {
+            int[] positions = retryablePositions(items);
+            if (positions.length == 0) {
+                break;
+            }
+
+            try {
+                Thread.sleep(policy.delayMillis(retry));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            log.warn("bulk 第 {} 次重试, 条数: {}", retry + 1, positions.length);
+            try {
+                merge(items, positions, GzipBulkClient.bulk(client, retryRequest(request, positions)));
+            } catch (IOException e) {
+                // 本轮整体失败, 条目保持原失败状态 进入下一轮
+                log.warn("bulk 重试提交失败: {}", e.getMessage());
+            }
+        }
+
+        return new BulkResponse(items, elapsedMillis(startTime));
+    }
+
+    /**
+     * 异步提交 (重试由调度器延时触发, 不阻塞 I/O 线程)
+     *
+     * @param request
+     * @param listener 所有重试结束后回调合并后的响应; 仅首次提交失败时回调 onFailure
+     */
+    public void executeAsync(BulkRequest request, ActionListener<BulkResponse> listener) {
+        Objects.requireNonNull(scheduler, "异步重试需要调度器");
+        long startTime = System.nanoTime();
+        GzipBulkClient.bulkAsync(client, request, ActionListener.wrap(
+                response -> retryAsync(request, response.getItems(), 0, startTime, listener),
+                listener::onFailure));
+    }
+
+    private void retryAsync(BulkRequest request, BulkItemResponse[] items, int retry, long startTime, ActionListener<BulkResponse> listener) {
+        int[] positions = retryablePositions(items);
+        if (positions.length == 0 || retry >= policy.getMaxRetries()) {
+            listener.onResponse(new BulkResponse(items, elapsedMillis(startTime)));
+            return;
+        }
+
+        BulkRequest retryRequest = retryRequest(request, positions);
+        Runnable resubmit = () -> {
+            log.warn("bulk 第 {} 次重试, 条数: {}", retry + 1, positions.length);
+            GzipBulkClient.bulkAsync(client, retryRequest, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse retryResponse) {
+                    merge(items, positions, retryResponse);
+                    retryAsync(request, items, retry + 1, startTime, listener);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    log.warn("bulk 重试提交失败: {}", e.getMessage());
+                    retryAsync(request, items, retry + 1, startTime, listener);
+                }
+            });
+        };
+
+        try {
+            scheduler.schedule(resubmit, policy.delayMillis(retry), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 调度器已关闭, 以当前结果结束
+            listener.onResponse(new BulkResponse(items, elapsedMillis(startTime)));
+        }
+    }
+
+    /**
+     * 可重试条目在原请求中的位置
+     *
+     * @param items
+     * @return
+     */
+    private int[] retryablePositions(BulkItemResponse[] items) {
+        int count = 0;
+        for (BulkItemResponse item : items) {
+            if (policy.isRetryable(item)) {
+                count++;
+            }
+        }
+
+        int[] positions = new int[count];
+        int index = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (policy.isRetryable(items[i])) {
+                positions[index++] = i;
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * 只包含失败条目的重试请求 (沿用原请求的刷新策略与超时)
+     *
+     * @param original
+     * @param positions
+     * @return
+     */
+    private static BulkRequest retryRequest(BulkRequest original, int[] positions) {
+        List<DocWriteRequest<?>> requests = original.requests();
+        BulkRequest retryRequest = new BulkRequest();
+        for (int position : positions) {
+            retryRequest.add(requests.get(position));
+        }
+        retryRequest.setRefreshPolicy(original.getRefreshPolicy());
+        retryRequest.timeout(original.timeout());
+        retryRequest.waitForActiveShards(original.waitForActiveShards());
+        return retryRequest;
+    }
+
+    /**
+     * 将重试响应按原始位置写回
+     *
+     * @param items
+     * @param positions
+     * @param retryResponse
+     */
+    private static void merge(BulkItemResponse[] items, int[] positions, BulkResponse retryResponse) {
+        for (BulkItemResponse retryItem : retryResponse.getItems()) {
+            int position = positions[retryItem.getItemId()];
+            items[position] = retryItem.isFailed()
+                    ? new BulkItemResponse(position, retryItem.getOpType(), retryItem.getFailure())
+                    : new BulkItemResponse(position, retryItem.getOpType(), retryItem.getResponse());
+        }
+    }
+
+    private static long elapsedMillis(long startTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+}
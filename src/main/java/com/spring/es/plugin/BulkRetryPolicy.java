@@ -0,0 +1,107 @@
+package com.spring.es.plugin;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.rest.RestStatus;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 类描述：bulk 单条失败重试策略 (带随机抖动的指数退避)
+ * <p>
+ * 第 n 次重试的等待时间在 [0, min(maxDelay, initialDelay * 2^n)] 之间随机取值,
+ * 避免大量写入方在集群繁忙时同时重试
+ */
+public class BulkRetryPolicy {
+
+    /**
+     * 默认最大重试次数
+     */
+    public static final int DEFAULT_MAX_RETRIES = 5;
+
+    /**
+     * 默认初始等待时间 (毫秒)
+     */
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 100;
+
+    /**
+     * 默认最大等待时间 (毫秒)
+     */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 10_000;
+
+    private final int maxRetries;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    public BulkRetryPolicy(int maxRetries, long initialDelayMillis, long maxDelayMillis) {
+        if (maxRetries < 0 || initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("重试参数不合法");
+        }
+        this.maxRetries = maxRetries;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * 默认策略
+     *
+     * @return
+     */
+    public static BulkRetryPolicy defaults() {
+        return new BulkRetryPolicy(DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * 不重试
+     *
+     * @return
+     */
+    public static BulkRetryPolicy noRetry() {
+        return new BulkRetryPolicy(0, 0, 0);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * 第 retry 次重试前的等待时间 (从 0 开始)
+     *
+     * @param retry
+     * @return
+     */
+    public long delayMillis(int retry) {
+        if (initialDelayMillis == 0) {
+            return 0;
+        }
+
+        long ceiling = initialDelayMillis << Math.min(retry, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMillis) {
+            ceiling = maxDelayMillis;
+        }
+
+        return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * 是否可重试 (集群繁忙 / 暂不可用)
+     *
+     * @param item
+     * @return
+     */
+    public boolean isRetryable(BulkItemResponse item) {
+        return item.isFailed() && isRetryable(item.getFailure().getStatus());
+    }
+
+    /**
+     * 是否可重试
+     *
+     * @param status
+     * @return
+     */
+    public boolean isRetryable(RestStatus status) {
+        return status == RestStatus.TOO_MANY_REQUESTS
+                || status == RestStatus.SERVICE_UNAVAILABLE
+                || status == RestStatus.BAD_GATEWAY
+                || status == RestStatus.GATEWAY_TIMEOUT;
+    }
+}
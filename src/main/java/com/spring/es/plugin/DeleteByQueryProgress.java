@@ -0,0 +1,81 @@
+package com.spring.es.plugin;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 类描述：delete-by-query 任务进度
+ */
+@Getter
+@ToString
+public class DeleteByQueryProgress {
+
+    private final String taskId;
+
+    private final boolean completed;
+
+    /**
+     * 匹配总条数
+     */
+    private final long total;
+
+    private final long deleted;
+
+    private final long batches;
+
+    private final long versionConflicts;
+
+    /**
+     * 当前限速, 不限速时为 Infinity
+     */
+    private final float requestsPerSecond;
+
+    /**
+     * 因限速累计等待的时间
+     */
+    private final long throttledMillis;
+
+    private final long runningTimeMillis;
+
+    private final boolean cancelled;
+
+    public DeleteByQueryProgress(String taskId, boolean completed, Map<String, Object> status, long runningTimeMillis) {
+        this.taskId = taskId;
+        this.completed = completed;
+        this.total = longValue(status, "total");
+        this.deleted = longValue(status, "deleted");
+        this.batches = longValue(status, "batches");
+        this.versionConflicts = longValue(status, "version_conflicts");
+        this.requestsPerSecond = (float) doubleValue(status, "requests_per_second");
+        this.throttledMillis = longValue(status, "throttled_millis");
+        this.runningTimeMillis = runningTimeMillis;
+        this.cancelled = Objects.nonNull(status.get("canceled"));
+    }
+
+    /**
+     * 完成比例 (0 - 1), 总数未知时为 0
+     *
+     * @return
+     */
+    public double getPercent() {
+        return total > 0 ? (double) deleted / total : 0;
+    }
+
+    private static long longValue(Map<String, Object> status, String field) {
+        Object value = status.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private static double doubleValue(Map<String, Object> status, String field) {
+        Object value = status.get(field);
+        // 不限速时 ES 返回 -1
+        if (!(value instanceof Number) || ((Number) value).doubleValue() < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return ((Number) value).doubleValue();
+    }
+}
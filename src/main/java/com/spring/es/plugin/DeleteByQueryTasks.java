@@ -0,0 +1,137 @@
+package com.spring.es.plugin;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.admin.cluster.node.tasks.cancel.CancelTasksRequest;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.RethrottleRequest;
+import org.elasticsearch.client.tasks.GetTaskRequest;
+import org.elasticsearch.client.tasks.GetTaskResponse;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.tasks.RawTaskStatus;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.tasks.TaskInfo;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+/**
+ * 类描述：后台 delete-by-query 任务 (提交 / 进度 / 取消 / 调整限速)
+ * <p>
+ * 以 wait_for_completion=false 提交, 请求立即返回任务 id, 删除在集群后台按 requests_per_second 限速、
+ * 按 slices 并行执行; 不主动刷新索引, 删除结果随自动刷新可见
+ */
+@Slf4j
+public class DeleteByQueryTasks {
+
+    /**
+     * 不限速
+     */
+    public static final float UNLIMITED = Float.POSITIVE_INFINITY;
+
+    /**
+     * 按分片数自动切片
+     */
+    public static final int AUTO_SLICES = 0;
+
+    private DeleteByQueryTasks() {
+    }
+
+    /**
+     * 提交后台删除任务
+     *
+     * @param client
+     * @param indexName
+     * @param typeName
+     * @param query             删除条件
+     * @param requestsPerSecond 每秒删除条数上限, {@link #UNLIMITED} 不限速
+     * @param slices            并行切片数, {@link #AUTO_SLICES} 按分片数自动切片
+     * @return 任务 id (node:id)
+     * @throws IOException
+     */
+    public static String submit(RestHighLevelClient client, String indexName, String typeName, QueryBuilder query,
+                                float requestsPerSecond, int slices) throws IOException {
+        Request request = new Request("POST", "/" + indexName + "/" + typeName + "/_delete_by_query");
+        request.addParameter("wait_for_completion", "false");
+        request.addParameter("conflicts", "proceed");
+        request.addParameter("requests_per_second", requestsPerSecondParam(requestsPerSecond));
+        request.addParameter("slices", slices == AUTO_SLICES ? "auto" : String.valueOf(slices));
+
+        XContentBuilder body = jsonBuilder().startObject().field("query", query).endObject();
+        request.setJsonEntity(Strings.toString(body));
+
+        Response response = client.getLowLevelClient().performRequest(request);
+        String taskId = JSON.parseObject(EntityUtils.toString(response.getEntity())).getString("task");
+        log.info("提交删除任务: {} {}", indexName, taskId);
+        return taskId;
+    }
+
+    /**
+     * 查询任务进度
+     *
+     * @param client
+     * @param taskId
+     * @return 任务不存在时为空
+     * @throws IOException
+     */
+    public static Optional<DeleteByQueryProgress> progress(RestHighLevelClient client, String taskId) throws IOException {
+        TaskId id = new TaskId(taskId);
+        Optional<GetTaskResponse> response = client.tasks().get(new GetTaskRequest(id.getNodeId(), id.getId()), RequestOptions.DEFAULT);
+        return response.map(task -> {
+            TaskInfo taskInfo = task.getTaskInfo();
+            return new DeleteByQueryProgress(taskId, task.isCompleted(), statusMap(taskInfo.getStatus()),
+                    TimeUnit.NANOSECONDS.toMillis(taskInfo.getRunningTimeNanos()));
+        });
+    }
+
+    /**
+     * 取消任务 (已删除的数据不会恢复)
+     *
+     * @param client
+     * @param taskId
+     * @throws IOException
+     */
+    public static void cancel(RestHighLevelClient client, String taskId) throws IOException {
+        CancelTasksRequest request = new CancelTasksRequest();
+        request.setTaskId(new TaskId(taskId));
+        client.tasks().cancel(request, RequestOptions.DEFAULT);
+        log.info("取消删除任务: {}", taskId);
+    }
+
+    /**
+     * 调整运行中任务的限速 (降低限速在当前批次结束后生效)
+     *
+     * @param client
+     * @param taskId
+     * @param requestsPerSecond 每秒删除条数上限, {@link #UNLIMITED} 不限速
+     * @throws IOException
+     */
+    public static void rethrottle(RestHighLevelClient client, String taskId, float requestsPerSecond) throws IOException {
+        client.deleteByQueryRethrottle(new RethrottleRequest(new TaskId(taskId), requestsPerSecond), RequestOptions.DEFAULT);
+        log.info("调整删除任务限速: {} {}", taskId, requestsPerSecond);
+    }
+
+    private static String requestsPerSecondParam(float requestsPerSecond) {
+        return Float.isInfinite(requestsPerSecond) ? "-1" : String.valueOf(requestsPerSecond);
+    }
+
+    private static Map<String, Object> statusMap(Task.Status status) {
+        if (status instanceof RawTaskStatus) {
+            return ((RawTaskStatus) status).toMap();
+        }
+
+        return Collections.emptyMap();
+    }
+}
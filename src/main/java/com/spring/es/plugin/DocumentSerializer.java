@@ -0,0 +1,254 @@
+package com.spring.es.plugin;
+
+import com.alibaba.fastjson.JSON;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.script.Script;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 类描述：Document 实体序列化
+ * <p>
+ * 根据 Property / MultiField 元数据为每个类预先生成属性写入器 (属性名预编码为 SerializedString),
+ * 直接写入字节缓冲, 不经过 fastjson 反射与中间 String; 未加注解的属性不写入, 值为 null 的属性省略
+ */
+public final class DocumentSerializer<T> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final ClassValue<DocumentSerializer<?>> REGISTRY = new ClassValue<DocumentSerializer<?>>() {
+        @Override
+        protected DocumentSerializer<?> computeValue(Class<?> type) {
+            return new DocumentSerializer<>(type);
+        }
+    };
+
+    /**
+     * 单次序列化的初始缓冲大小
+     */
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final EntityMetadata metadata;
+    private final PropertyWriter[] writers;
+
+    private DocumentSerializer(Class<?> clazz) {
+        this.metadata = EntityMetadata.of(clazz);
+        List<EntityMetadata.PropertyMetadata> properties = metadata.getProperties();
+        this.writers = new PropertyWriter[properties.size()];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new PropertyWriter(properties.get(i));
+        }
+    }
+
+    /**
+     * 获取 (并缓存) 类的序列化器
+     *
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DocumentSerializer<T> of(Class<T> clazz) {
+        return (DocumentSerializer<T>) REGISTRY.get(clazz);
+    }
+
+    /**
+     * 序列化为 JSON 字节
+     *
+     * @param entity
+     * @return
+     */
+    public BytesReference toBytes(T entity) {
+        BytesStreamOutput output = new BytesStreamOutput(INITIAL_BUFFER_SIZE);
+        writeTo(entity, output);
+        return output.bytes();
+    }
+
+    /**
+     * 序列化到输出流 (不会关闭输出流)
+     *
+     * @param entity
+     * @param output
+     */
+    public void writeTo(T entity, OutputStream output) {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            for (PropertyWriter writer : writers) {
+                writer.write(generator, entity);
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 生成新增请求 (索引 / type 取自 Document 注解, 分区时写入对应的分区索引, 有 Id / CompositeId 时设置文档 id, 重复写入覆盖同一文档)
+     *
+     * @param entity
+     * @return
+     */
+    public IndexRequest toIndexRequest(T entity) {
+        IndexRequest indexRequest = new IndexRequest(metadata.getWriteIndexName(entity), metadata.getTypeName(), metadata.getId(entity));
+        indexRequest.source(toBytes(entity), XContentType.JSON);
+        return indexRequest;
+    }
+
+    /**
+     * 生成 upsert 请求: 文档存在时合并属性, 不存在时新增 (doc_as_upsert)
+     *
+     * @param entity 必须能生成 id (Id / CompositeId)
+     * @return
+     */
+    public UpdateRequest toUpdateRequest(T entity) {
+        UpdateRequest updateRequest = newUpdateRequest(entity);
+        updateRequest.doc(new IndexRequest().source(toBytes(entity), XContentType.JSON));
+        updateRequest.docAsUpsert(true);
+        return updateRequest;
+    }
+
+    /**
+     * 生成脚本 upsert 请求: 文档存在时执行脚本, 不存在时以实体新增
+     *
+     * @param entity 必须能生成 id (Id / CompositeId)
+     * @param script 更新脚本
+     * @return
+     */
+    public UpdateRequest toUpdateRequest(T entity, Script script) {
+        UpdateRequest updateRequest = newUpdateRequest(entity);
+        updateRequest.script(script);
+        updateRequest.upsert(new IndexRequest().source(toBytes(entity), XContentType.JSON));
+        return updateRequest;
+    }
+
+    /**
+     * 生成只执行脚本的更新请求 (不带 upsert 文档, 文档不存在时该条失败)
+     *
+     * @param entity 必须能生成 id (Id / CompositeId)
+     * @param script 更新脚本
+     * @return
+     */
+    public UpdateRequest toScriptUpdateRequest(T entity, Script script) {
+        UpdateRequest updateRequest = newUpdateRequest(entity);
+        updateRequest.script(script);
+        return updateRequest;
+    }
+
+    private UpdateRequest newUpdateRequest(T entity) {
+        String id = metadata.getId(entity);
+        if (Objects.isNull(id)) {
+            throw new IllegalArgumentException(metadata.getType().getName() + " 未设置 Id / CompositeId, 无法生成更新请求");
+        }
+
+        return new UpdateRequest(metadata.getWriteIndexName(entity), metadata.getTypeName(), id);
+    }
+
+    /**
+     * 属性值类型
+     */
+    private enum ValueKind {
+        STRING, INT, LONG, DOUBLE, FLOAT, BOOLEAN, BIG_DECIMAL, BIG_INTEGER, DATE, ENUM, OTHER;
+
+        private static ValueKind of(Class<?> type) {
+            if (type == String.class) {
+                return STRING;
+            } else if (type == Integer.class || type == int.class || type == Short.class || type == short.class
+                    || type == Byte.class || type == byte.class) {
+                return INT;
+            } else if (type == Long.class || type == long.class) {
+                return LONG;
+            } else if (type == Double.class || type == double.class) {
+                return DOUBLE;
+            } else if (type == Float.class || type == float.class) {
+                return FLOAT;
+            } else if (type == Boolean.class || type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == BigDecimal.class) {
+                return BIG_DECIMAL;
+            } else if (type == BigInteger.class) {
+                return BIG_INTEGER;
+            } else if (Date.class.isAssignableFrom(type)) {
+                return DATE;
+            } else if (type.isEnum()) {
+                return ENUM;
+            }
+
+            return OTHER;
+        }
+    }
+
+    /**
+     * 单个属性写入器 (属性类型在生成时确定)
+     */
+    private static final class PropertyWriter {
+
+        private final EntityMetadata.PropertyMetadata property;
+        private final SerializedString name;
+        private final ValueKind kind;
+
+        private PropertyWriter(EntityMetadata.PropertyMetadata property) {
+            this.property = property;
+            this.name = new SerializedString(property.getName());
+            this.kind = ValueKind.of(property.getField().getType());
+        }
+
+        private void write(JsonGenerator generator, Object entity) throws IOException {
+            Object value = property.get(entity);
+            if (Objects.isNull(value)) {
+                return;
+            }
+
+            generator.writeFieldName(name);
+            switch (kind) {
+                case STRING:
+                    generator.writeString((String) value);
+                    break;
+                case INT:
+                    generator.writeNumber(((Number) value).intValue());
+                    break;
+                case LONG:
+                    generator.writeNumber((Long) value);
+                    break;
+                case DOUBLE:
+                    generator.writeNumber((Double) value);
+                    break;
+                case FLOAT:
+                    generator.writeNumber((Float) value);
+                    break;
+                case BOOLEAN:
+                    generator.writeBoolean((Boolean) value);
+                    break;
+                case BIG_DECIMAL:
+                    generator.writeNumber((BigDecimal) value);
+                    break;
+                case BIG_INTEGER:
+                    generator.writeNumber((BigInteger) value);
+                    break;
+                case DATE:
+                    generator.writeNumber(((Date) value).getTime());
+                    break;
+                case ENUM:
+                    generator.writeString(((Enum<?>) value).name());
+                    break;
+                default:
+                    // 内嵌对象 / 集合 交由 fastjson
+                    generator.writeRawValue(JSON.toJSONString(value));
+            }
+        }
+    }
+}
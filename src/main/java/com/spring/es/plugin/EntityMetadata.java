@@ -0,0 +1,442 @@
+package com.spring.es.plugin;
+
+import com.spring.es.plugin.annotations.CompositeId;
+import com.spring.es.plugin.annotations.Document;
+import com.spring.es.plugin.annotations.FieldType;
+import com.spring.es.plugin.annotations.Id;
+import com.spring.es.plugin.annotations.MultiField;
+import com.spring.es.plugin.annotations.Partition;
+import com.spring.es.plugin.annotations.Property;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 类描述：实体类元数据
+ * <p>
+ * Document / Id / CompositeId / Property / MultiField 注解按类只解析一次 (ClassValue 缓存), 写入热路径上不再反射读取注解
+ */
+@Getter
+public final class EntityMetadata {
+
+    private static final ClassValue<EntityMetadata> REGISTRY = new ClassValue<EntityMetadata>() {
+        @Override
+        protected EntityMetadata computeValue(Class<?> type) {
+            return new EntityMetadata(type);
+        }
+    };
+
+    private final Class<?> type;
+
+    /**
+     * Document 注解, 未设置时为 null
+     */
+    private final Document document;
+
+    /**
+     * 类及父类的全部属性 (共享缓存, 对外只返回副本)
+     */
+    @Getter(AccessLevel.NONE)
+    private final Field[] fields;
+
+    /**
+     * 带 Property / MultiField 注解的属性
+     */
+    private final List<PropertyMetadata> properties;
+
+    /**
+     * Id 属性名, 没有时为 ""
+     */
+    private final String idFieldName;
+
+    @Getter(AccessLevel.NONE)
+    private final MethodHandle idGetter;
+
+    /**
+     * 组合 id 各属性的读取器, 没有 CompositeId 注解时为 null
+     */
+    @Getter(AccessLevel.NONE)
+    private final MethodHandle[] compositeIdGetters;
+
+    @Getter(AccessLevel.NONE)
+    private final String compositeIdSeparator;
+
+    /**
+     * 分区索引名中的时间格式 (UTC), 不分区时为 null
+     */
+    @Getter(AccessLevel.NONE)
+    private final DateTimeFormatter partitionFormatter;
+
+    /**
+     * 分区时间属性的读取器, 为 null 时按写入时间分区
+     */
+    @Getter(AccessLevel.NONE)
+    private final MethodHandle timestampGetter;
+
+    private EntityMetadata(Class<?> type) {
+        this.type = type;
+        this.document = type.getAnnotation(Document.class);
+        this.fields = retrieveFields(type);
+
+        List<PropertyMetadata> propertyList = new ArrayList<>();
+        Field idField = null;
+        for (Field field : fields) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            if (idField == null && Objects.nonNull(field.getAnnotation(Id.class))) {
+                idField = field;
+            }
+
+            Property property = field.getAnnotation(Property.class);
+            MultiField multiField = field.getAnnotation(MultiField.class);
+            if (Objects.nonNull(property) || Objects.nonNull(multiField)) {
+                propertyList.add(new PropertyMetadata(field, property, multiField));
+            }
+        }
+        this.properties = Collections.unmodifiableList(propertyList);
+        this.idFieldName = Objects.nonNull(idField) ? idField.getName() : "";
+        this.idGetter = Objects.nonNull(idField) ? getter(idField) : null;
+
+        CompositeId compositeId = type.getAnnotation(CompositeId.class);
+        if (Objects.isNull(idField) && Objects.nonNull(compositeId)) {
+            this.compositeIdGetters = namedGetters(type, fields, compositeId.fields());
+            this.compositeIdSeparator = compositeId.separator();
+        } else {
+            this.compositeIdGetters = null;
+            this.compositeIdSeparator = null;
+        }
+
+        if (Objects.nonNull(document) && document.partition() != Partition.NONE) {
+            this.partitionFormatter = DateTimeFormatter.ofPattern(document.partition().getPattern()).withZone(ZoneOffset.UTC);
+            this.timestampGetter = document.timestampField().isEmpty()
+                    ? null : namedGetters(type, fields, new String[]{document.timestampField()})[0];
+        } else {
+            this.partitionFormatter = null;
+            this.timestampGetter = null;
+        }
+    }
+
+    /**
+     * 获取 (并缓存) 类元数据
+     *
+     * @param clazz
+     * @return
+     */
+    public static EntityMetadata of(Class<?> clazz) {
+        return REGISTRY.get(clazz);
+    }
+
+    /**
+     * 类及父类的全部属性
+     *
+     * @return 副本
+     */
+    public Field[] getFields() {
+        return fields.clone();
+    }
+
+    public boolean isDocument() {
+        return Objects.nonNull(document);
+    }
+
+    /**
+     * 获取 Document 注解
+     *
+     * @return
+     */
+    public Document requireDocument() {
+        if (Objects.isNull(document)) {
+            throw new IllegalArgumentException(type.getName() + " 未设置 Document 注解");
+        }
+
+        return document;
+    }
+
+    /**
+     * 索引名
+     *
+     * @return
+     */
+    public String getIndexName() {
+        return requireDocument().indexName();
+    }
+
+    /**
+     * 索引 type
+     *
+     * @return
+     */
+    public String getTypeName() {
+        return requireDocument().type();
+    }
+
+    /**
+     * 是否按时间分区
+     *
+     * @return
+     */
+    public boolean isPartitioned() {
+        return Objects.nonNull(partitionFormatter);
+    }
+
+    /**
+     * 匹配全部分区索引的通配名 (不分区时即索引名)
+     *
+     * @return
+     */
+    public String getIndexPattern() {
+        return isPartitioned() ? getIndexName() + "-*" : getIndexName();
+    }
+
+    /**
+     * 指定时间所属的分区索引名 (不分区时即索引名)
+     *
+     * @param epochMillis
+     * @return
+     */
+    public String getPartitionIndexName(long epochMillis) {
+        if (!isPartitioned()) {
+            return getIndexName();
+        }
+
+        return getIndexName() + "-" + partitionFormatter.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    /**
+     * 解析分区索引名对应的分区起始时间
+     *
+     * @param indexName 具体索引名
+     * @return 不是本类的分区索引时返回 null
+     */
+    public Long getPartitionStart(String indexName) {
+        String prefix = getIndexName() + "-";
+        if (!isPartitioned() || !indexName.startsWith(prefix)) {
+            return null;
+        }
+
+        try {
+            TemporalAccessor time = partitionFormatter.parse(indexName.substring(prefix.length()));
+            LocalDateTime start;
+            if (time.isSupported(ChronoField.HOUR_OF_DAY)) {
+                start = LocalDateTime.from(time);
+            } else if (time.isSupported(ChronoField.DAY_OF_MONTH)) {
+                start = LocalDate.from(time).atStartOfDay();
+            } else {
+                start = YearMonth.from(time).atDay(1).atStartOfDay();
+            }
+            return start.toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 分区结束时间 (不含), 按 UTC 日历计算 (按月分区时各月天数不同)
+     *
+     * @param partitionStart
+     * @return
+     */
+    public long getPartitionEnd(long partitionStart) {
+        return Instant.ofEpochMilli(partitionStart).atOffset(ZoneOffset.UTC)
+                .plus(1, requireDocument().partition().getUnit())
+                .toInstant().toEpochMilli();
+    }
+
+    /**
+     * 实体写入的索引名: 分区时按时间属性 (为空时按当前时间) 路由到具体分区, 不能写入别名.
+     * 时间属性为 毫秒时间戳 / Date / yyyy-MM-dd 字符串 (按 UTC 当日 0 点)
+     *
+     * @param entity
+     * @return
+     */
+    public String getWriteIndexName(Object entity) {
+        if (!isPartitioned()) {
+            return getIndexName();
+        }
+
+        long timestamp = System.currentTimeMillis();
+        if (Objects.nonNull(timestampGetter)) {
+            Object value = invoke(timestampGetter, entity);
+            if (value instanceof Number) {
+                timestamp = ((Number) value).longValue();
+            } else if (value instanceof Date) {
+                timestamp = ((Date) value).getTime();
+            } else if (value instanceof CharSequence) {
+                timestamp = parseDate(value.toString().trim());
+            }
+        }
+
+        return getPartitionIndexName(timestamp);
+    }
+
+    private long parseDate(String value) {
+        try {
+            return LocalDate.parse(value).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(type.getName() + " 分区时间属性不是 yyyy-MM-dd 日期: " + value, e);
+        }
+    }
+
+    public boolean hasId() {
+        return Objects.nonNull(idGetter) || Objects.nonNull(compositeIdGetters);
+    }
+
+    /**
+     * 读取实体 id (Id 属性值, 或 CompositeId 各属性值拼接, 空值按空串拼接)
+     *
+     * @param entity
+     * @return 没有 id 定义或 Id 属性值为空时返回 null (由 ES 自动生成)
+     */
+    public String getId(Object entity) {
+        if (Objects.nonNull(idGetter)) {
+            Object value = invoke(idGetter, entity);
+            return Objects.nonNull(value) ? value.toString() : null;
+        }
+        if (Objects.isNull(compositeIdGetters)) {
+            return null;
+        }
+
+        StringBuilder id = new StringBuilder();
+        for (int i = 0; i < compositeIdGetters.length; i++) {
+            if (i > 0) {
+                id.append(compositeIdSeparator);
+            }
+            Object value = invoke(compositeIdGetters[i], entity);
+            if (Objects.nonNull(value)) {
+                id.append(value);
+            }
+        }
+
+        return id.toString();
+    }
+
+    /**
+     * 按名称解析属性读取器 (组合 id / 分区时间)
+     *
+     * @param type
+     * @param fields
+     * @param names
+     * @return
+     */
+    private static MethodHandle[] namedGetters(Class<?> type, Field[] fields, String[] names) {
+        if (names.length == 0) {
+            throw new IllegalArgumentException(type.getName() + " 未指定属性");
+        }
+
+        MethodHandle[] getters = new MethodHandle[names.length];
+        for (int i = 0; i < names.length; i++) {
+            for (Field field : fields) {
+                if (field.getName().equals(names[i]) && !Modifier.isStatic(field.getModifiers())) {
+                    getters[i] = getter(field);
+                    break;
+                }
+            }
+            if (Objects.isNull(getters[i])) {
+                throw new IllegalArgumentException(type.getName() + " 不存在属性 " + names[i]);
+            }
+        }
+
+        return getters;
+    }
+
+    /**
+     * 获取类 属性 数组 (沿继承链向上)
+     *
+     * @param clazz
+     * @return
+     */
+    private static Field[] retrieveFields(Class<?> clazz) {
+        List<Field> fields = new ArrayList<>();
+
+        Class<?> targetClass = clazz;
+        do {
+            fields.addAll(Arrays.asList(targetClass.getDeclaredFields()));
+            targetClass = targetClass.getSuperclass();
+        }
+        while (targetClass != null && targetClass != Object.class);
+
+        return fields.toArray(new Field[0]);
+    }
+
+    static MethodHandle getter(Field field) {
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("无法读取属性 " + field.getName(), e);
+        }
+    }
+
+    static Object invoke(MethodHandle getter, Object entity) {
+        try {
+            return getter.invoke(entity);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 属性元数据
+     */
+    @Getter
+    public static final class PropertyMetadata {
+
+        private final Field field;
+
+        private final String name;
+
+        /**
+         * Property 注解 (MultiField 时为 mainField)
+         */
+        private final Property property;
+
+        private final MultiField multiField;
+
+        @Getter(AccessLevel.NONE)
+        private final MethodHandle getter;
+
+        private PropertyMetadata(Field field, Property property, MultiField multiField) {
+            this.field = field;
+            this.name = field.getName();
+            this.property = Objects.nonNull(property) ? property : multiField.mainField();
+            this.multiField = multiField;
+            this.getter = EntityMetadata.getter(field);
+        }
+
+        public FieldType getFieldType() {
+            return property.type();
+        }
+
+        /**
+         * 读取属性值
+         *
+         * @param entity
+         * @return
+         */
+        public Object get(Object entity) {
+            return invoke(getter, entity);
+        }
+    }
+}
@@ -8,27 +8,22 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpHost;
 import org.apache.http.client.utils.DateUtils;
 import org.elasticsearch.action.ActionListener;
-import org.elasticsearch.action.DocWriteRequest;
-import org.elasticsearch.action.DocWriteResponse;
-import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
-import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.WriteRequest;
-import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.elasticsearch.index.reindex.BulkByScrollResponse;
 import org.elasticsearch.index.reindex.DeleteByQueryRequest;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -41,7 +36,7 @@ public class EsBulkUtils {
     }
 
     /**
-     * 批量新增
+     * 批量新增 (一次性提交, 持续写入请使用 {@link BulkIngester})
      *
      * @param client
      * @param indexRequests
@@ -54,16 +49,53 @@ public class EsBulkUtils {
     }
 
     /**
-     * 批量新增 (异步)
+     * 批量提交 已组装好的 BulkRequest
+     *
+     * @param client
+     * @param bulkRequest
+     * @return
+     */
+    public static boolean bulkRequest(RestHighLevelClient client, BulkRequest bulkRequest) {
+        return bulkData(bulkRequest, client);
+    }
+
+    /**
+     * 批量提交 已组装好的 BulkRequest (失败条目重试)
+     *
+     * @param client
+     * @param bulkRequest
+     * @param retryPolicy 重试策略
+     * @return 重试后仍失败的条目
+     */
+    public static BulkResult bulkRequest(RestHighLevelClient client, BulkRequest bulkRequest, BulkRetryPolicy retryPolicy) {
+        return bulkData(bulkRequest, client, retryPolicy);
+    }
+
+    /**
+     * 批量新增 (失败条目重试)
      *
      * @param client
      * @param indexRequests
      * @param refreshPolicy WAIT_UNTIL (等待自动刷新)
-     * @return
+     * @param retryPolicy   重试策略
+     * @return 重试后仍失败的条目
      */
-    public static void asyncBulkRequest(RestHighLevelClient client, List<IndexRequest> indexRequests, WriteRequest.RefreshPolicy refreshPolicy) {
+    public static BulkResult bulkRequest(RestHighLevelClient client, List<IndexRequest> indexRequests, WriteRequest.RefreshPolicy refreshPolicy, BulkRetryPolicy retryPolicy) {
         BulkRequest bulkRequest = getBulkRequest(indexRequests, refreshPolicy);
-        asyncBulkData(bulkRequest, client);
+        return bulkData(bulkRequest, client, retryPolicy);
+    }
+
+    /**
+     * 批量新增 (异步, 不限流; 持续写入需要背压时使用 {@link AsyncBulkExecutor})
+     *
+     * @param client
+     * @param indexRequests
+     * @param refreshPolicy WAIT_UNTIL (等待自动刷新)
+     * @return 完成时返回失败条目; 整个请求失败时异常结束
+     */
+    public static CompletableFuture<BulkResult> asyncBulkRequest(RestHighLevelClient client, List<IndexRequest> indexRequests, WriteRequest.RefreshPolicy refreshPolicy) {
+        BulkRequest bulkRequest = getBulkRequest(indexRequests, refreshPolicy);
+        return asyncBulkData(bulkRequest, client);
     }
 
     private static BulkRequest getBulkRequest(List<IndexRequest> indexRequests, WriteRequest.RefreshPolicy refreshPolicy) {
@@ -93,75 +125,84 @@ public class EsBulkUtils {
     }
 
     /**
-     * 批量处理结果 返回
+     * 批量处理结果 返回 (可重试的失败条目按默认策略重试)
      *
      * @param request
      * @param client
      */
     private static boolean bulkData(BulkRequest request, RestHighLevelClient client) {
-        try {
-            BulkResponse bulkResponse = client.bulk(request, RequestOptions.DEFAULT);
-            log.info("此次新增条数: {}", bulkResponse.getItems().length);
-            for (BulkItemResponse bulkItemResponse : bulkResponse) {
-
-                if (Objects.nonNull(bulkItemResponse.getFailure())) {
-                    log.error("新增错误：" + JSONObject.toJSONString(bulkItemResponse));
-                    continue;
-                }
-
-                DocWriteResponse itemResponse = bulkItemResponse.getResponse();
-                if (bulkItemResponse.getOpType() == DocWriteRequest.OpType.INDEX
-                        || bulkItemResponse.getOpType() == DocWriteRequest.OpType.CREATE) {
-                    IndexResponse indexResponse = (IndexResponse) itemResponse;
-                } else if (bulkItemResponse.getOpType() == DocWriteRequest.OpType.UPDATE) {
-                    UpdateResponse updateResponse = (UpdateResponse) itemResponse;
-                } else if (bulkItemResponse.getOpType() == DocWriteRequest.OpType.DELETE) {
-                    DeleteResponse deleteResponse = (DeleteResponse) itemResponse;
-                }
+        BulkResult result = bulkData(request, client, BulkRetryPolicy.defaults());
+        return !result.hasFailures();
+    }
 
-            }
+    /**
+     * 批量处理结果 返回
+     *
+     * @param request
+     * @param client
+     * @param retryPolicy
+     */
+    private static BulkResult bulkData(BulkRequest request, RestHighLevelClient client, BulkRetryPolicy retryPolicy) {
+        BulkResult result;
+        try {
+            BulkResponse bulkResponse = new BulkRetryHandler(client, retryPolicy).execute(request);
+            result = BulkResult.of(request, bulkResponse);
         } catch (IOException e) {
-            log.error(e.getMessage());
-            return false;
+            log.error("bulk 请求失败", e);
+            return BulkResult.failed(request, e);
         }
 
-        return true;
+        log.info("此次新增条数: {}, 失败条数: {}", result.getTotal(), result.getFailedItems().size());
+        for (BulkResult.FailedItem failedItem : result.getFailedItems()) {
+            log.error("新增错误：" + failedItem.getMessage());
+        }
+
+        return result;
     }
 
-    private static void asyncBulkData(BulkRequest request, RestHighLevelClient client) {
-        client.bulkAsync(request, RequestOptions.DEFAULT, new ActionListener<BulkResponse>() {
+    private static CompletableFuture<BulkResult> asyncBulkData(BulkRequest request, RestHighLevelClient client) {
+        CompletableFuture<BulkResult> future = new CompletableFuture<>();
+        GzipBulkClient.bulkAsync(client, request, new ActionListener<BulkResponse>() {
             @Override
             public void onResponse(BulkResponse bulkItemResponses) {
-
+                BulkResult result = BulkResult.of(request, bulkItemResponses);
+                for (BulkResult.FailedItem failedItem : result.getFailedItems()) {
+                    log.error("新增错误：" + failedItem.getMessage());
+                }
+                future.complete(result);
             }
 
             @Override
             public void onFailure(Exception e) {
-                log.error("新增错误：" + JSONObject.toJSONString(e.getCause().getMessage()));
+                log.error("新增错误：" + e.getMessage());
+                future.completeExceptionally(e);
             }
         });
+        return future;
     }
 
     /**
-     * 异步删除带监听     * @param client
+     * 异步删除 timeField 早于 now - retention 的数据 (逐条删除, 开销较大; 分区索引请使用 {@link PartitionRetention},
+     * 需要限速 / 切片 / 进度查询时使用 {@link DeleteByQueryTasks})
+     *
+     * @param client
+     * @param indexName
+     * @param typeName
+     * @param timeField 毫秒时间戳属性
+     * @param retention 保留时长
      */
-    public static void deleteByQueryAsync(RestHighLevelClient client, String indexName, String typeName) {
+    public static void deleteByQueryAsync(RestHighLevelClient client, String indexName, String typeName, String timeField, TimeValue retention) {
         DeleteByQueryRequest deleteByQueryRequest = new DeleteByQueryRequest(indexName);
         BoolQueryBuilder boolBuilder = QueryBuilders.boolQuery();
-        long currentTime = System.currentTimeMillis();
-        long threeDay = 5 * 24 * 3600 * 1000;
-        long startTime = currentTime - threeDay;
-        // createTime  3 天前数据
-        RangeQueryBuilder threeDaysAgo = EsUtils.rangeQuery(startTime, currentTime, "createTime");
-        boolBuilder.must(threeDaysAgo);
+        long cutoff = System.currentTimeMillis() - retention.millis();
+        // 保留期之前的数据
+        boolBuilder.must(QueryBuilders.rangeQuery(timeField).lt(cutoff));
         deleteByQueryRequest.setQuery(boolBuilder);
         deleteByQueryRequest.types(typeName);
-        deleteByQueryRequest.setRefresh(true);
         client.deleteByQueryAsync(deleteByQueryRequest, RequestOptions.DEFAULT, new ActionListener<BulkByScrollResponse>() {
                     @Override
                     public void onResponse(BulkByScrollResponse bulkItemResponses) {
-                        System.out.println(JSON.toJSONString(bulkItemResponses.getStatus()));
-                        //log.info(JSON.toJSONString(bulkItemResponses.getStatus()));
+                        log.info("删除完成：" + JSON.toJSONString(bulkItemResponses.getStatus()));
                     }
 
                     @Override
@@ -179,7 +220,8 @@ public class EsBulkUtils {
         String password = "44MzIIFV";
         // 13212313
         RestHighLevelClient restHighLevelClient = new ElasticClientDecorator(new HttpHost(url, port), userName, password).getRestHighLevelClient();
-        EsBulkUtils.deleteByQueryAsync(restHighLevelClient, IndexBuilder.getIndexName(TrafficInfo.class), IndexBuilder.getType(TrafficInfo.class));
+        EsBulkUtils.deleteByQueryAsync(restHighLevelClient, IndexBuilder.getIndexName(TrafficInfo.class), IndexBuilder.getType(TrafficInfo.class),
+                "createTime", TimeValue.timeValueHours(5 * 24));
     }
 
 }
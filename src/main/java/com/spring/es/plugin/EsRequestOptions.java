@@ -0,0 +1,60 @@
+package com.spring.es.plugin;
+
+import com.spring.es.config.es.CompressingRestHighLevelClient;
+import com.spring.es.config.es.GzipResponseConsumerFactory;
+import org.apache.http.HttpHeaders;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+
+/**
+ * 类描述：查询 / 批量请求使用的 RequestOptions
+ * <p>
+ * client 开启压缩 ({@link CompressingRestHighLevelClient}) 时 search / scroll / bulk 请求携带 Accept-Encoding: gzip
+ * (需 ES 开启 http.compression), 响应在客户端解压; bulk 请求体由 {@link GzipBulkClient} 压缩. 其余请求使用 RequestOptions.DEFAULT
+ */
+public class EsRequestOptions {
+
+    /**
+     * 接受 gzip 响应
+     */
+    public static final RequestOptions GZIP;
+
+    /**
+     * gzip 请求体 并接受 gzip 响应
+     */
+    public static final RequestOptions GZIP_BODY;
+
+    static {
+        RequestOptions.Builder builder = RequestOptions.DEFAULT.toBuilder();
+        builder.addHeader(HttpHeaders.ACCEPT_ENCODING, GzipResponseConsumerFactory.GZIP);
+        builder.setHttpAsyncResponseConsumerFactory(new GzipResponseConsumerFactory(GzipResponseConsumerFactory.DEFAULT_BUFFER_LIMIT));
+        GZIP = builder.build();
+
+        builder = GZIP.toBuilder();
+        builder.addHeader(HttpHeaders.CONTENT_ENCODING, GzipResponseConsumerFactory.GZIP);
+        GZIP_BODY = builder.build();
+    }
+
+    private EsRequestOptions() {
+    }
+
+    /**
+     * client 是否开启压缩
+     *
+     * @param client
+     * @return
+     */
+    public static boolean isCompression(RestHighLevelClient client) {
+        return client instanceof CompressingRestHighLevelClient && ((CompressingRestHighLevelClient) client).isCompression();
+    }
+
+    /**
+     * search / scroll / bulk 使用的 RequestOptions
+     *
+     * @param client
+     * @return
+     */
+    public static RequestOptions largeResponse(RestHighLevelClient client) {
+        return isCompression(client) ? GZIP : RequestOptions.DEFAULT;
+    }
+}
@@ -1,38 +1,53 @@
 package com.spring.es.plugin;
 
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.TypeReference;
 import com.spring.es.model.entity.Page;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.action.search.ShardSearchFailure;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.InternalSearchResponse;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.NestedSortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 类描述：
  */
 @Slf4j
 public class EsUtils {
+
+    /**
+     * CharsetDecoder 非线程安全, 每个线程一个
+     */
+    private static final ThreadLocal<CharsetDecoder> UTF8_DECODER = ThreadLocal.withInitial(StandardCharsets.UTF_8::newDecoder);
+
     /**
      *
      * @param queryBuilder
@@ -50,7 +65,7 @@ public class EsUtils {
     }
 
     /**
-     * 搜索 公共调用
+     * 搜索 公共调用 (from/size 分页, 深度翻页请使用 searchAfterStream)
      * @param queryBuilder
      * @param pageNum
      * @param pageSize
@@ -107,20 +122,31 @@ public class EsUtils {
     }
 
     /**
+     * 同步查询 (需要截止时间 / 失败类型时使用 SearchExecutor)
      *
      * @param restHighLevelClient
      * @param searchRequest
-     * @return
+     * @return 请求失败时返回 0 条命中的空结果
      */
     public static SearchResponse getSearchResponse(RestHighLevelClient restHighLevelClient, SearchRequest searchRequest) {
         try {
-            return restHighLevelClient.search(searchRequest, RequestOptions.DEFAULT);
+            return restHighLevelClient.search(searchRequest, EsRequestOptions.largeResponse(restHighLevelClient));
         } catch (IOException e) {
-            log.error("{}", e.getCause().getMessage());
-            return new SearchResponse();
+            log.error("查询失败, index: {}", Arrays.toString(searchRequest.indices()), e);
+            return emptySearchResponse();
         }
     }
 
+    /**
+     * 0 条命中的查询结果 (hits 等不为 null)
+     *
+     * @return
+     */
+    public static SearchResponse emptySearchResponse() {
+        return new SearchResponse(InternalSearchResponse.empty(), null, 0, 0, 0, 0,
+                ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+    }
+
     /**
      * 设置索引和Type
      * @param sourceBuilder
@@ -163,6 +189,12 @@ public class EsUtils {
         return shs.getHits()[0].getSourceAsString();
     }
 
+    /**
+     * 结果集拼接为 JSON 数组字符串 (大结果集请使用 writeResultData 直接写出)
+     *
+     * @param shs
+     * @return
+     */
     public static String getResultData(SearchHits shs) {
         if (Objects.isNull(shs) || shs.totalHits == 0) {
             return "[]";
@@ -171,12 +203,42 @@ public class EsUtils {
         return "[".concat(Arrays.stream(shs.getHits()).map(SearchHit::getSourceAsString).collect(Collectors.joining(","))).concat("]");
     }
 
+    /**
+     * 结果集以 JSON 数组直接写入输出流 (如 HttpServletResponse.getOutputStream()),
+     * 各条 _source 字节原样写出, 不生成中间 String; 不会关闭输出流
+     *
+     * @param shs
+     * @param outputStream
+     * @throws IOException
+     */
+    public static void writeResultData(SearchHits shs, OutputStream outputStream) throws IOException {
+        outputStream.write('[');
+        if (Objects.nonNull(shs)) {
+            boolean first = true;
+            for (SearchHit hit : shs.getHits()) {
+                BytesReference source = hit.getSourceRef();
+                if (Objects.isNull(source)) {
+                    continue;
+                }
+                if (!first) {
+                    outputStream.write(',');
+                }
+                source.writeTo(outputStream);
+                first = false;
+            }
+        }
+        outputStream.write(']');
+        outputStream.flush();
+    }
+
     /**
      * 结果集转化为 实体
+     * 泛型 T 在运行时被擦除, 实际得到的是 JSONObject, 请使用 {@link #hitResultToObj(SearchHits, Class)}
      *
      * @param shs
      * @return
      */
+    @Deprecated
     public static <T> List<T> hitResultToObj(SearchHits shs) {
         List<T> resultData = new ArrayList<>();
         if (Objects.isNull(shs) || shs.totalHits == 0) {
@@ -191,6 +253,86 @@ public class EsUtils {
         return resultData;
     }
 
+    /**
+     * 结果集转化为 实体
+     *
+     * @param shs
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    public static <T> List<T> hitResultToObj(SearchHits shs, Class<T> clazz) {
+        if (Objects.isNull(shs) || shs.getHits().length == 0) {
+            return new ArrayList<>();
+        }
+
+        SearchHit[] hits = shs.getHits();
+        List<T> resultData = new ArrayList<>(hits.length);
+        for (SearchHit hit : hits) {
+            resultData.add(hitToObj(hit, clazz));
+        }
+
+        return resultData;
+    }
+
+    /**
+     * 单条命中结果转化为 实体
+     *
+     * @param hit
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    public static <T> T hitToObj(SearchHit hit, Class<T> clazz) {
+        BytesReference source = hit.getSourceRef();
+        if (Objects.isNull(source)) {
+            return null;
+        }
+
+        // 直接解析 _source 字节 (单段时不拷贝), 不经过 getSourceAsString 的重新序列化;
+        // 反序列化器由 fastjson ParserConfig 按类型缓存
+        BytesRef bytes = source.toBytesRef();
+        return JSON.parseObject(bytes.bytes, bytes.offset, bytes.length, UTF8_DECODER.get(), clazz);
+    }
+
+    /**
+     * 全量遍历 (search_after 按需分页, 内存中只保留一页)
+     * 使用完需关闭 Stream: try (Stream<T> stream = EsUtils.searchAfterStream(...)) {}
+     *
+     * @param restHighLevelClient
+     * @param sourceBuilder       查询条件
+     * @param indexName
+     * @param typeName
+     * @param pageSize            每页条数
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    public static <T> Stream<T> searchAfterStream(RestHighLevelClient restHighLevelClient, SearchSourceBuilder sourceBuilder,
+                                                  String indexName, String typeName, int pageSize, Class<T> clazz) {
+        return new SearchAfterIterator<>(restHighLevelClient, sourceBuilder, indexName, typeName, pageSize,
+                hit -> hitToObj(hit, clazz)).stream();
+    }
+
+    /**
+     * 全量遍历 (scroll, 排序值无法唯一时使用; 关闭 Stream 时清除 scroll 上下文)
+     *
+     * @param restHighLevelClient
+     * @param sourceBuilder       查询条件
+     * @param indexName
+     * @param typeName
+     * @param pageSize            每页条数
+     * @param keepAlive           scroll 上下文保留时间
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    public static <T> Stream<T> scrollStream(RestHighLevelClient restHighLevelClient, SearchSourceBuilder sourceBuilder,
+                                             String indexName, String typeName, int pageSize, TimeValue keepAlive, Class<T> clazz) {
+        return new ScrollIterator<>(restHighLevelClient, sourceBuilder, indexName, typeName, pageSize, keepAlive,
+                hit -> hitToObj(hit, clazz)).stream();
+    }
+
     /**
      * 分页结果集转换
      *
@@ -0,0 +1,181 @@
+package com.spring.es.plugin;
+
+import com.spring.es.config.es.CompressingRestHighLevelClient;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 类描述：gzip 压缩请求体的 bulk
+ * <p>
+ * 当前 rest client 在请求拦截器执行前就已确定请求体, 无法在 http 层替换为压缩实体; 因此沿用
+ * high level client 的 bulk 转换 (RequestConverters.bulk, 包内可见, 初始化时解析一次) 生成请求后压缩请求体,
+ * 经 low level client 发送并解析 BulkResponse. 未开启压缩、请求体小于阈值或转换不可用时直接使用 client.bulk
+ */
+@Slf4j
+public class GzipBulkClient {
+
+    private static final MethodHandle BULK_CONVERTER = bulkConverter();
+
+    private GzipBulkClient() {
+    }
+
+    /**
+     * 同步 bulk
+     *
+     * @param client
+     * @param bulkRequest
+     * @return
+     * @throws IOException
+     */
+    public static BulkResponse bulk(RestHighLevelClient client, BulkRequest bulkRequest) throws IOException {
+        Request request = compressedRequest(client, bulkRequest);
+        if (Objects.isNull(request)) {
+            return client.bulk(bulkRequest, EsRequestOptions.largeResponse(client));
+        }
+
+        try {
+            return parse(client.getLowLevelClient().performRequest(request));
+        } catch (ResponseException e) {
+            throw statusException(e);
+        }
+    }
+
+    /**
+     * 异步 bulk
+     *
+     * @param client
+     * @param bulkRequest
+     * @param listener
+     */
+    public static void bulkAsync(RestHighLevelClient client, BulkRequest bulkRequest, ActionListener<BulkResponse> listener) {
+        Request request;
+        try {
+            request = compressedRequest(client, bulkRequest);
+        } catch (IOException e) {
+            listener.onFailure(e);
+            return;
+        }
+        if (Objects.isNull(request)) {
+            client.bulkAsync(bulkRequest, EsRequestOptions.largeResponse(client), listener);
+            return;
+        }
+
+        client.getLowLevelClient().performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                BulkResponse bulkResponse;
+                try {
+                    bulkResponse = parse(response);
+                } catch (IOException e) {
+                    listener.onFailure(e);
+                    return;
+                }
+                listener.onResponse(bulkResponse);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onFailure(e instanceof ResponseException ? statusException((ResponseException) e) : e);
+            }
+        });
+    }
+
+    /**
+     * 生成压缩后的请求
+     *
+     * @param client
+     * @param bulkRequest
+     * @return 不需要压缩时返回 null
+     * @throws IOException
+     */
+    private static Request compressedRequest(RestHighLevelClient client, BulkRequest bulkRequest) throws IOException {
+        if (!EsRequestOptions.isCompression(client) || Objects.isNull(BULK_CONVERTER)
+                || bulkRequest.estimatedSizeInBytes() < ((CompressingRestHighLevelClient) client).getCompressionThreshold()) {
+            return null;
+        }
+
+        Request request;
+        try {
+            request = (Request) BULK_CONVERTER.invoke(bulkRequest);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+
+        HttpEntity entity = request.getEntity();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream((int) Math.max(entity.getContentLength() / 4, 64));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            entity.writeTo(gzip);
+        }
+        request.setEntity(new ByteArrayEntity(compressed.toByteArray(), ContentType.get(entity)));
+        request.setOptions(EsRequestOptions.GZIP_BODY);
+        return request;
+    }
+
+    private static BulkResponse parse(Response response) throws IOException {
+        try (InputStream content = response.getEntity().getContent();
+             XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY,
+                     DeprecationHandler.THROW_UNSUPPORTED_OPERATION, content)) {
+            return BulkResponse.fromXContent(parser);
+        }
+    }
+
+    /**
+     * 与 high level client 一致, 以 ElasticsearchStatusException 表示整体失败 (如 429);
+     * 非标准状态码 (如代理返回) 按 500 处理
+     *
+     * @param e
+     * @return
+     */
+    private static ElasticsearchStatusException statusException(ResponseException e) {
+        Response response = e.getResponse();
+        String body = null;
+        try {
+            body = Objects.nonNull(response.getEntity()) ? EntityUtils.toString(response.getEntity()) : null;
+        } catch (IOException ignored) {
+            // 响应体只用于错误信息
+        }
+
+        RestStatus status = RestStatus.fromCode(response.getStatusLine().getStatusCode());
+        return new ElasticsearchStatusException(Objects.nonNull(body) ? body : e.getMessage(),
+                Objects.nonNull(status) ? status : RestStatus.INTERNAL_SERVER_ERROR, e);
+    }
+
+    private static MethodHandle bulkConverter() {
+        try {
+            Method method = Class.forName("org.elasticsearch.client.RequestConverters").getDeclaredMethod("bulk", BulkRequest.class);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("无法使用 bulk 请求体压缩: {}", e.getMessage());
+            return null;
+        }
+    }
+}
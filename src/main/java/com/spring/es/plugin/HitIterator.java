@@ -0,0 +1,114 @@
+package com.spring.es.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 类描述：按需分页拉取的结果集迭代器
+ * <p>
+ * 每次只在内存中保留一页命中结果, 当前页遍历完后才请求下一页; 用完必须 close 释放服务端上下文
+ */
+@Slf4j
+public abstract class HitIterator<T> implements Iterator<T>, Closeable {
+
+    private final Function<SearchHit, T> converter;
+
+    private SearchHit[] page = new SearchHit[0];
+    private int position;
+    private boolean exhausted;
+    private boolean closed;
+
+    protected HitIterator(Function<SearchHit, T> converter) {
+        this.converter = converter;
+    }
+
+    /**
+     * 拉取下一页
+     *
+     * @return 空数组表示没有更多数据
+     * @throws IOException
+     */
+    protected abstract SearchHit[] fetchNextPage() throws IOException;
+
+    /**
+     * 释放服务端上下文
+     *
+     * @throws IOException
+     */
+    protected abstract void release() throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (position < page.length) {
+            return true;
+        }
+        if (exhausted || closed) {
+            return false;
+        }
+
+        try {
+            page = fetchNextPage();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        position = 0;
+        if (page.length == 0) {
+            exhausted = true;
+            close();
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return converter.apply(page[position++]);
+    }
+
+    /**
+     * 尽力释放服务端上下文; 释放失败只记录日志 (上下文到期后由服务端自行回收), 不掩盖调用方正在抛出的异常
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            release();
+        } catch (IOException | RuntimeException e) {
+            log.warn("释放服务端上下文失败", e);
+        }
+    }
+
+    /**
+     * 转为 Stream (关闭 Stream 时释放服务端上下文)
+     *
+     * @return
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+}
@@ -17,20 +17,23 @@ package com.spring.es.plugin;
 
 import com.spring.es.plugin.annotations.*;
 import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.admin.indices.alias.Alias;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.springframework.core.ResolvableType;
 
 import java.io.IOException;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collections;
 import java.util.Objects;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
@@ -53,6 +56,14 @@ public class IndexBuilder {
 
     public static final String TYPE_VALUE_KEYWORD = "keyword";
 
+    public static final String SETTING_REFRESH_INTERVAL = "index.refresh_interval";
+    public static final String SETTING_NUMBER_OF_REPLICAS = "index.number_of_replicas";
+
+    /**
+     * 关闭自动刷新
+     */
+    public static final String REFRESH_INTERVAL_DISABLED = "-1";
+
     /**
      * WriteRequest.RefreshPolicy.WAIT_UNTIL : 一直保持请求连接中，直接当所做的更改对于搜索查询可见时的刷新发生后，再将结果返回 (就是等待自动刷新)
      * WriteRequest.RefreshPolicy.IMMEDIATE ： 立即刷新整个 index  比较消耗性能，当超过 1000 万数据时 会存在一定数据延迟现象
@@ -99,6 +110,60 @@ public class IndexBuilder {
         client.indices().create(request, RequestOptions.DEFAULT);
     }
 
+    /**
+     * 创建 (覆盖) 分区索引模板: 匹配 indexName-*, 新分区自动应用 settings / mapping 并加入别名 indexName
+     *
+     * @param client
+     * @param clazz
+     * @throws IOException
+     */
+    public static void putIndexTemplate(RestHighLevelClient client, Class clazz) throws IOException {
+        Document document = getDocument(clazz);
+        putIndexTemplate(client, clazz, document.refreshInterval(), document.replicas());
+    }
+
+    /**
+     * 创建 (覆盖) 分区索引模板, 使用指定的 刷新间隔 与 副本数 (如批量导入期间新建的分区)
+     *
+     * @param client
+     * @param clazz
+     * @param refreshInterval
+     * @param replicas
+     * @throws IOException
+     */
+    public static void putIndexTemplate(RestHighLevelClient client, Class<?> clazz, String refreshInterval, int replicas) throws IOException {
+        EntityMetadata metadata = EntityMetadata.of(clazz);
+        PutIndexTemplateRequest request = new PutIndexTemplateRequest(metadata.getIndexName());
+        request.patterns(Collections.singletonList(metadata.getIndexPattern()));
+        request.settings(getSetting(refreshInterval, (short) replicas, metadata.requireDocument().shards()), XContentType.JSON);
+        request.mapping(getType(clazz), putMapping(clazz));
+        request.alias(new Alias(metadata.getIndexName()));
+        client.indices().putTemplate(request, RequestOptions.DEFAULT);
+    }
+
+    /**
+     * 初始化索引: 不分区时创建索引; 分区时写入模板并创建当前分区 (使别名立即可查询), 之后的分区在首次写入时自动创建
+     *
+     * @param client
+     * @param clazz
+     * @throws IOException
+     */
+    public static void initIndex(RestHighLevelClient client, Class clazz) throws IOException {
+        EntityMetadata metadata = EntityMetadata.of(clazz);
+        if (!metadata.isPartitioned()) {
+            if (!isIndexExists(client, clazz)) {
+                createIndex(client, clazz);
+            }
+            return;
+        }
+
+        putIndexTemplate(client, clazz);
+        String currentPartition = metadata.getPartitionIndexName(System.currentTimeMillis());
+        if (!isIndexExists(client, currentPartition)) {
+            client.indices().create(new CreateIndexRequest(currentPartition), RequestOptions.DEFAULT);
+        }
+    }
+
     /**
      * 判断索引存在
      *
@@ -129,6 +194,47 @@ public class IndexBuilder {
         return client.indices().exists(request, RequestOptions.DEFAULT);
     }
 
+    /**
+     * 动态修改 刷新间隔 与 副本数
+     *
+     * @param client
+     * @param indexName
+     * @param refreshInterval
+     * @param replicas
+     * @throws IOException
+     */
+    public static void updateIndexSettings(RestHighLevelClient client, String indexName, String refreshInterval, int replicas) throws IOException {
+        UpdateSettingsRequest request = new UpdateSettingsRequest(indexName);
+        request.settings(Settings.builder()
+                .put(SETTING_REFRESH_INTERVAL, refreshInterval)
+                .put(SETTING_NUMBER_OF_REPLICAS, replicas));
+        client.indices().putSettings(request, RequestOptions.DEFAULT);
+    }
+
+    /**
+     * 恢复为 Document 注解中的 刷新间隔 与 副本数
+     *
+     * @param client
+     * @param clazz
+     * @param indexName
+     * @throws IOException
+     */
+    public static void restoreIndexSettings(RestHighLevelClient client, Class clazz, String indexName) throws IOException {
+        Document document = getDocument(clazz);
+        updateIndexSettings(client, indexName, document.refreshInterval(), document.replicas());
+    }
+
+    /**
+     * 手动刷新索引
+     *
+     * @param client
+     * @param indexName
+     * @throws IOException
+     */
+    public static void refreshIndex(RestHighLevelClient client, String indexName) throws IOException {
+        client.indices().refresh(new RefreshRequest(indexName), RequestOptions.DEFAULT);
+    }
+
     /**
      * 创建 Settings
      *
@@ -136,11 +242,10 @@ public class IndexBuilder {
      * @return
      */
     private static String putSettings(Class clazz) {
-        Annotation annotation = clazz.getAnnotation(Document.class);
-        if (Objects.isNull(annotation)) {
+        Document document = EntityMetadata.of(clazz).getDocument();
+        if (Objects.isNull(document)) {
             return null;
         }
-        Document document = (Document) annotation;
         /** 设置节点刷新间隔 默认 1 秒*/
         String refreshInterval = document.refreshInterval();
         /** 设置副本数 */
@@ -202,12 +307,12 @@ public class IndexBuilder {
      * @return
      */
     private static Document getDocument(Class clazz) throws IOException {
-        Annotation annotation = clazz.getAnnotation(Document.class);
-        if (Objects.isNull(annotation)) {
+        Document document = EntityMetadata.of(clazz).getDocument();
+        if (Objects.isNull(document)) {
             throw new IOException("无法为该类设置 Mapping , 请先设置好 Document 注解");
         }
 
-        return (Document) annotation;
+        return document;
     }
 
     /**
@@ -217,13 +322,7 @@ public class IndexBuilder {
      * @return
      */
     public static String getType(Class clazz) {
-        Document document = null;
-        try {
-            document = getDocument(clazz);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return document.type();
+        return EntityMetadata.of(clazz).getTypeName();
     }
 
     /**
@@ -233,13 +332,7 @@ public class IndexBuilder {
      * @return
      */
     public static String getIndexName(Class clazz) {
-        Document document = null;
-        try {
-            document = getDocument(clazz);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return document.indexName();
+        return EntityMetadata.of(clazz).getIndexName();
     }
 
     /**
@@ -249,16 +342,7 @@ public class IndexBuilder {
      * @return
      */
     private static String getIdFieldName(Class clazz) {
-        Field[] field02 = clazz.getDeclaredFields();
-        for (Field field : field02) {
-            Id id = field.getAnnotation(Id.class);
-            if (Objects.nonNull(id)) {
-                return field.getName();
-            }
-
-        }
-
-        return "";
+        return EntityMetadata.of(clazz).getIdFieldName();
     }
 
     /**
@@ -361,18 +445,7 @@ public class IndexBuilder {
      * @return
      */
     private static Field[] retrieveFields(Class clazz) {
-        //
-        List<Field> fields = new ArrayList<>();
-
-        // Keep backing up the inheritance hierarchy.
-        Class targetClass = clazz;
-        do {
-            fields.addAll(Arrays.asList(targetClass.getDeclaredFields()));
-            targetClass = targetClass.getSuperclass();
-        }
-        while (targetClass != null && targetClass != Object.class);
-
-        return fields.toArray(new Field[fields.size()]);
+        return EntityMetadata.of(clazz).getFields();
     }
 
     /**
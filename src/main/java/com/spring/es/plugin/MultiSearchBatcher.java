@@ -0,0 +1,188 @@
+package com.spring.es.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 类描述：合并并发查询为 _msearch
+ * <p>
+ * 第一个查询到达后等待 window, 期间到达的查询 (最多 maxBatchSize 个, 满即提交) 合并为一次 _msearch,
+ * 各查询的响应按顺序分发回各自的 future. 单个查询失败只影响该查询, 整个请求失败时全部以同一原因失败
+ */
+@Slf4j
+public class MultiSearchBatcher implements Closeable {
+
+    private final RestHighLevelClient client;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 当前批次, 由 this 加锁保护
+     */
+    private List<PendingSearch> pending;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    /**
+     * @param client
+     * @param maxBatchSize 单次 _msearch 最多合并的查询数
+     * @param window       第一个查询到达后最多等待多久提交
+     */
+    public MultiSearchBatcher(RestHighLevelClient client, int maxBatchSize, TimeValue window) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize 必须大于 0");
+        }
+        this.client = client;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = window.millis();
+        this.pending = new ArrayList<>(maxBatchSize);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "msearch-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交查询, 与窗口内其他查询合并发送
+     *
+     * @param request
+     * @return 总是正常结束 (失败以 SearchResult 表示)
+     */
+    public CompletableFuture<SearchResult> submit(SearchRequest request) {
+        PendingSearch search = new PendingSearch(request);
+        List<PendingSearch> batch = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("MultiSearchBatcher 已关闭");
+            }
+
+            pending.add(search);
+            if (pending.size() >= maxBatchSize || windowMillis <= 0) {
+                batch = takeBatch();
+            } else if (Objects.isNull(scheduledFlush)) {
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (Objects.nonNull(batch)) {
+            execute(batch);
+        }
+        return search.future;
+    }
+
+    /**
+     * 立即提交当前批次
+     */
+    public void flush() {
+        List<PendingSearch> batch;
+        synchronized (this) {
+            batch = takeBatch();
+        }
+
+        if (Objects.nonNull(batch)) {
+            execute(batch);
+        }
+    }
+
+    private List<PendingSearch> takeBatch() {
+        if (Objects.nonNull(scheduledFlush)) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+            return null;
+        }
+
+        List<PendingSearch> batch = pending;
+        pending = new ArrayList<>(maxBatchSize);
+        return batch;
+    }
+
+    private void execute(List<PendingSearch> batch) {
+        if (batch.size() == 1) {
+            PendingSearch search = batch.get(0);
+            client.searchAsync(search.request, EsRequestOptions.largeResponse(client), ActionListener.wrap(
+                    response -> search.future.complete(SearchResult.success(response, false, search.elapsedMillis())),
+                    e -> search.fail(e)));
+            return;
+        }
+
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        for (PendingSearch search : batch) {
+            multiSearchRequest.add(search.request);
+        }
+
+        client.msearchAsync(multiSearchRequest, EsRequestOptions.largeResponse(client), new ActionListener<MultiSearchResponse>() {
+            @Override
+            public void onResponse(MultiSearchResponse response) {
+                MultiSearchResponse.Item[] items = response.getResponses();
+                for (int i = 0; i < batch.size(); i++) {
+                    PendingSearch search = batch.get(i);
+                    if (i >= items.length) {
+                        search.fail(new IllegalStateException("_msearch 响应条数不足: " + items.length + "/" + batch.size()));
+                    } else if (items[i].isFailure()) {
+                        search.fail(items[i].getFailure());
+                    } else {
+                        search.future.complete(SearchResult.success(items[i].getResponse(), false, search.elapsedMillis()));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                log.error("_msearch 失败, 查询数: {}", batch.size(), e);
+                for (PendingSearch search : batch) {
+                    search.fail(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 提交剩余查询
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        scheduler.shutdown();
+    }
+
+    private static final class PendingSearch {
+
+        private final SearchRequest request;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<SearchResult> future = new CompletableFuture<>();
+
+        private PendingSearch(SearchRequest request) {
+            this.request = request;
+        }
+
+        private long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        private void fail(Exception e) {
+            future.complete(SearchResult.failure(e, elapsedMillis()));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.spring.es.plugin;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
+import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 类描述：按分区清理过期数据
+ * <p>
+ * 分区索引 (Document partition) 整个分区结束时间早于 now - retention 时直接删除索引, 不产生 delete-by-query
+ * 的逐条删除与段碎片; 未分区的索引退回到按 timestampField 的限速后台 delete-by-query.
+ * 设置了 expireField 时, 未过期分区中 expireField 早于 now - retention 的数据也以限速后台 delete-by-query 清理
+ * <p>
+ * 最近一个已结束的分区只在仍有主分片多于 1 个段时合并 (定时清理重复执行不会重复合并); 合并异步提交,
+ * 不受客户端读取超时限制, 客户端超时后服务端仍继续合并
+ */
+@Slf4j
+public class PartitionRetention {
+
+    /**
+     * 合并后的段数
+     */
+    private static final int FORCE_MERGE_SEGMENTS = 1;
+
+    private PartitionRetention() {
+    }
+
+    /**
+     * 列出类的全部分区索引
+     *
+     * @param client
+     * @param clazz
+     * @return 分区索引名 -> 分区起始时间 (按时间升序)
+     * @throws IOException
+     */
+    public static Map<String, Long> listPartitions(RestHighLevelClient client, Class<?> clazz) throws IOException {
+        EntityMetadata metadata = EntityMetadata.of(clazz);
+        if (!metadata.isPartitioned()) {
+            return Collections.emptyMap();
+        }
+
+        GetIndexRequest request = new GetIndexRequest();
+        request.indices(metadata.getIndexPattern());
+        request.indicesOptions(IndicesOptions.lenientExpandOpen());
+        String[] indices = client.indices().get(request, RequestOptions.DEFAULT).getIndices();
+
+        // 分区名中的时间格式可直接按字典序排序
+        Map<String, Long> partitions = new TreeMap<>();
+        for (String index : indices) {
+            Long start = metadata.getPartitionStart(index);
+            if (Objects.nonNull(start)) {
+                partitions.put(index, start);
+            }
+        }
+
+        return partitions;
+    }
+
+    /**
+     * 清理过期数据
+     *
+     * @param client
+     * @param clazz
+     * @param retention  保留时长
+     * @param forceMerge 是否合并最近一个已结束 (不再写入) 的分区
+     * @param requestsPerSecond delete-by-query 的限速
+     * @return
+     * @throws IOException
+     */
+    public static RetentionReport apply(RestHighLevelClient client, Class<?> clazz, TimeValue retention, boolean forceMerge,
+                                        float requestsPerSecond) throws IOException {
+        long begin = System.currentTimeMillis();
+        EntityMetadata metadata = EntityMetadata.of(clazz);
+        if (!metadata.isPartitioned()) {
+            String timestampField = metadata.requireDocument().timestampField();
+            if (timestampField.isEmpty()) {
+                throw new IllegalArgumentException(clazz.getName() + " 未分区且未设置 timestampField, 无法清理");
+            }
+
+            long cutoff = System.currentTimeMillis() - retention.millis();
+            String taskId = DeleteByQueryTasks.submit(client, metadata.getIndexName(), metadata.getTypeName(),
+                    QueryBuilders.rangeQuery(timestampField).lt(cutoff), requestsPerSecond, DeleteByQueryTasks.AUTO_SLICES);
+            return new RetentionReport(metadata.getIndexName(), retention.getStringRep(), Collections.emptyList(), null, taskId,
+                    System.currentTimeMillis() - begin);
+        }
+
+        long now = System.currentTimeMillis();
+        long cutoff = now - retention.millis();
+        List<String> expired = new ArrayList<>();
+        int livePartitions = 0;
+        String lastClosed = null;
+        for (Map.Entry<String, Long> partition : listPartitions(client, clazz).entrySet()) {
+            long end = metadata.getPartitionEnd(partition.getValue());
+            if (end <= cutoff) {
+                expired.add(partition.getKey());
+                continue;
+            }
+            livePartitions++;
+            if (end <= now) {
+                lastClosed = partition.getKey();
+            }
+        }
+
+        if (!expired.isEmpty()) {
+            client.indices().delete(new DeleteIndexRequest(expired.toArray(new String[0])), RequestOptions.DEFAULT);
+            log.info("删除过期分区: {}", expired);
+        }
+
+        // 未过期分区中的过期数据 (分区时间与过期时间不一致时)
+        String taskId = null;
+        String expireField = metadata.requireDocument().expireField();
+        if (!expireField.isEmpty() && livePartitions > 0) {
+            // 过期分区已删除, 别名此时只覆盖未过期分区
+            taskId = DeleteByQueryTasks.submit(client, metadata.getIndexName(), metadata.getTypeName(),
+                    QueryBuilders.rangeQuery(expireField).lt(cutoff), requestsPerSecond, DeleteByQueryTasks.AUTO_SLICES);
+        }
+
+        String forceMerged = null;
+        if (forceMerge && Objects.nonNull(lastClosed)) {
+            try {
+                if (needsForceMerge(client, lastClosed)) {
+                    forceMergeAsync(client, lastClosed);
+                    forceMerged = lastClosed;
+                }
+            } catch (IOException e) {
+                // 合并只影响查询性能, 不影响清理结果
+                log.warn("查询分区段数失败: {}", lastClosed, e);
+            }
+        }
+
+        return new RetentionReport(metadata.getIndexPattern(), retention.getStringRep(), expired, forceMerged, taskId,
+                System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * 是否有主分片的段数多于 FORCE_MERGE_SEGMENTS
+     *
+     * @param client
+     * @param indexName
+     * @return
+     * @throws IOException
+     */
+    private static boolean needsForceMerge(RestHighLevelClient client, String indexName) throws IOException {
+        Request request = new Request("GET", "/_cat/segments/" + indexName);
+        request.addParameter("format", "json");
+        request.addParameter("h", "shard,prirep");
+        Response response = client.getLowLevelClient().performRequest(request);
+
+        Map<String, Integer> primarySegments = new HashMap<>();
+        for (Object segment : JSON.parseArray(EntityUtils.toString(response.getEntity()))) {
+            JSONObject row = (JSONObject) segment;
+            if ("p".equals(row.getString("prirep"))) {
+                primarySegments.merge(row.getString("shard"), 1, Integer::sum);
+            }
+        }
+
+        for (int segments : primarySegments.values()) {
+            if (segments > FORCE_MERGE_SEGMENTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 异步提交合并, 结果只记录日志
+     *
+     * @param client
+     * @param indexName
+     */
+    private static void forceMergeAsync(RestHighLevelClient client, String indexName) {
+        ForceMergeRequest request = new ForceMergeRequest(indexName);
+        request.maxNumSegments(FORCE_MERGE_SEGMENTS);
+        client.indices().forcemergeAsync(request, RequestOptions.DEFAULT, ActionListener.wrap(
+                response -> log.info("合并分区完成: {}", indexName),
+                e -> log.warn("合并分区未确认完成 (超时时服务端仍在合并): {}", indexName, e)));
+        log.info("提交合并分区: {}", indexName);
+    }
+}
@@ -0,0 +1,158 @@
+package com.spring.es.plugin;
+
+import java.util.Arrays;
+
+/**
+ * 类描述：最近写入键缓存
+ * <p>
+ * 键与值均为 64 位指纹, 存放在开放寻址的 long 数组中 (不创建 Entry / String 对象), 容量固定;
+ * 条目超过 ttl 后视为不存在, 探测范围内没有空位时淘汰其中最早过期的条目. 指纹冲突概率可忽略,
+ * 冲突时最多导致一次写入被跳过
+ */
+public class RecentKeyCache {
+
+    /**
+     * 空槽位标记 (指纹为 0 时改为 1)
+     */
+    private static final long EMPTY = 0L;
+
+    /**
+     * 单次查找 / 插入的最大探测长度
+     */
+    private static final int MAX_PROBES = 8;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] keys;
+    private final long[] values;
+    private final long[] expireAt;
+    private final int mask;
+    private final long ttlMillis;
+
+    /**
+     * @param capacity  最大条目数 (向上取 2 的幂)
+     * @param ttlMillis 条目有效期
+     */
+    public RecentKeyCache(int capacity, long ttlMillis) {
+        if (capacity <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("capacity 与 ttl 必须大于 0");
+        }
+
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        this.keys = new long[size];
+        this.values = new long[size];
+        this.expireAt = new long[size];
+        this.mask = size - 1;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 键在有效期内已写入且值未变化
+     *
+     * @param key   键指纹
+     * @param value 值指纹
+     * @return
+     */
+    public synchronized boolean contains(long key, long value) {
+        key = normalize(key);
+        long now = System.currentTimeMillis();
+        int slot = slot(key);
+        for (int i = 0; i < MAX_PROBES; i++, slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot] == value && expireAt[slot] > now;
+            }
+            if (keys[slot] == EMPTY) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 记录写入 (覆盖旧值并重新计算有效期)
+     *
+     * @param key   键指纹
+     * @param value 值指纹
+     */
+    public synchronized void put(long key, long value) {
+        key = normalize(key);
+        long now = System.currentTimeMillis();
+        int slot = slot(key);
+        int victim = slot;
+        for (int i = 0; i < MAX_PROBES; i++, slot = (slot + 1) & mask) {
+            if (keys[slot] == key || keys[slot] == EMPTY) {
+                victim = slot;
+                break;
+            }
+            if (expireAt[slot] < expireAt[victim]) {
+                victim = slot;
+            }
+        }
+
+        keys[victim] = key;
+        values[victim] = value;
+        expireAt[victim] = now + ttlMillis;
+    }
+
+    /**
+     * 移除键 (写入失败时调用)
+     *
+     * @param key 键指纹
+     */
+    public synchronized void invalidate(long key) {
+        key = normalize(key);
+        int slot = slot(key);
+        for (int i = 0; i < MAX_PROBES; i++, slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                // 保留键以免打断后续条目的探测链, 只令其过期
+                expireAt[slot] = 0L;
+                return;
+            }
+            if (keys[slot] == EMPTY) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 清空
+     */
+    public synchronized void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0L);
+        Arrays.fill(expireAt, 0L);
+    }
+
+    /**
+     * 字符串 64 位指纹 (FNV-1a)
+     *
+     * @param text
+     * @return
+     */
+    public static long fingerprint(CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    private int slot(long key) {
+        // murmur3 fmix64, 打散低位
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    private static long normalize(long key) {
+        return key == EMPTY ? 1L : key;
+    }
+}
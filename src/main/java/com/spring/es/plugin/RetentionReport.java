@@ -0,0 +1,52 @@
+package com.spring.es.plugin;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 类描述：数据保留清理结果
+ */
+@Getter
+@ToString
+public class RetentionReport {
+
+    /**
+     * 清理的索引 (分区时为通配名)
+     */
+    private final String index;
+
+    /**
+     * 保留时长
+     */
+    private final String retention;
+
+    /**
+     * 删除的分区索引
+     */
+    private final List<String> deletedIndices;
+
+    /**
+     * 提交合并 (异步) 的分区索引, 未合并或已是单段时为 null
+     */
+    private final String forceMergedIndex;
+
+    /**
+     * 提交的后台 delete-by-query 任务 id (见 {@link DeleteByQueryTasks}): 未分区时按 timestampField 清理,
+     * 分区时按 expireField 清理未过期分区中的过期数据; 未提交时为 null
+     */
+    private final String deleteByQueryTask;
+
+    private final long tookInMillis;
+
+    public RetentionReport(String index, String retention, List<String> deletedIndices, String forceMergedIndex,
+                           String deleteByQueryTask, long tookInMillis) {
+        this.index = index;
+        this.retention = retention;
+        this.deletedIndices = deletedIndices;
+        this.forceMergedIndex = forceMergedIndex;
+        this.deleteByQueryTask = deleteByQueryTask;
+        this.tookInMillis = tookInMillis;
+    }
+}
@@ -0,0 +1,78 @@
+package com.spring.es.plugin;
+
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * 类描述：基于 scroll 的结果集迭代器
+ * <p>
+ * 适用于排序值无法保证唯一、不能使用 search_after 的场景; 遍历结束或 close 时清除 scroll 上下文
+ */
+public class ScrollIterator<T> extends HitIterator<T> {
+
+    private final RestHighLevelClient client;
+    private final SearchRequest searchRequest;
+    private final TimeValue keepAlive;
+
+    private String scrollId;
+
+    /**
+     * @param client
+     * @param sourceBuilder 查询条件 (不会被修改)
+     * @param indexName
+     * @param typeName
+     * @param pageSize      每页条数 (切片 scroll 时为每个切片每页条数)
+     * @param keepAlive     两次拉取之间 scroll 上下文的保留时间
+     * @param converter     命中结果转换
+     */
+    public ScrollIterator(RestHighLevelClient client, SearchSourceBuilder sourceBuilder, String indexName, String typeName,
+                          int pageSize, TimeValue keepAlive, Function<SearchHit, T> converter) {
+        super(converter);
+        this.client = client;
+        this.keepAlive = keepAlive;
+        SearchSourceBuilder scrollSource = sourceBuilder.copyWithNewSlice(sourceBuilder.slice());
+        scrollSource.from(0).size(pageSize);
+        if (scrollSource.sorts() == null || scrollSource.sorts().isEmpty()) {
+            scrollSource.sort(SortBuilders.fieldSort(SearchAfterIterator.FIELD_DOC));
+        }
+        this.searchRequest = EsUtils.getSearchRequest(scrollSource, indexName, typeName);
+        this.searchRequest.scroll(keepAlive);
+    }
+
+    @Override
+    protected SearchHit[] fetchNextPage() throws IOException {
+        SearchResponse response;
+        if (scrollId == null) {
+            response = client.search(searchRequest, EsRequestOptions.largeResponse(client));
+        } else {
+            SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId);
+            scrollRequest.scroll(keepAlive);
+            response = client.scroll(scrollRequest, EsRequestOptions.largeResponse(client));
+        }
+        scrollId = response.getScrollId();
+        return response.getHits().getHits();
+    }
+
+    @Override
+    protected void release() throws IOException {
+        if (scrollId == null) {
+            return;
+        }
+
+        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+        clearScrollRequest.addScrollId(scrollId);
+        scrollId = null;
+        client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+    }
+}
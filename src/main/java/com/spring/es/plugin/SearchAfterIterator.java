@@ -0,0 +1,70 @@
+package com.spring.es.plugin;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * 类描述：基于 search_after 的结果集迭代器
+ * <p>
+ * 不依赖 from/size, 也不占用服务端 scroll 上下文; 翻到任意深度的开销都与第一页相同.
+ * 未指定排序时按 _doc 排序并以 _id 兜底, 指定排序时调用方需保证排序值唯一 (通常在最后追加 _id)
+ */
+public class SearchAfterIterator<T> extends HitIterator<T> {
+
+    public static final String FIELD_DOC = "_doc";
+    public static final String FIELD_ID = "_id";
+
+    private final RestHighLevelClient client;
+    private final SearchSourceBuilder sourceBuilder;
+    private final String indexName;
+    private final String typeName;
+
+    private Object[] searchAfter;
+
+    /**
+     * @param client
+     * @param sourceBuilder 查询条件 (不会被修改)
+     * @param indexName
+     * @param typeName
+     * @param pageSize      每页条数
+     * @param converter     命中结果转换
+     */
+    public SearchAfterIterator(RestHighLevelClient client, SearchSourceBuilder sourceBuilder, String indexName, String typeName,
+                               int pageSize, Function<SearchHit, T> converter) {
+        super(converter);
+        this.client = client;
+        this.indexName = indexName;
+        this.typeName = typeName;
+        this.sourceBuilder = sourceBuilder.copyWithNewSlice(sourceBuilder.slice());
+        this.sourceBuilder.from(0).size(pageSize).trackTotalHits(false);
+        if (this.sourceBuilder.sorts() == null || this.sourceBuilder.sorts().isEmpty()) {
+            this.sourceBuilder.sort(SortBuilders.fieldSort(FIELD_DOC)).sort(SortBuilders.fieldSort(FIELD_ID));
+        }
+    }
+
+    @Override
+    protected SearchHit[] fetchNextPage() throws IOException {
+        // 第一页不带 search_after
+        if (searchAfter != null) {
+            sourceBuilder.searchAfter(searchAfter);
+        }
+        SearchRequest searchRequest = EsUtils.getSearchRequest(sourceBuilder, indexName, typeName);
+        SearchHit[] hits = client.search(searchRequest, EsRequestOptions.largeResponse(client)).getHits().getHits();
+        if (hits.length > 0) {
+            searchAfter = hits[hits.length - 1].getSortValues();
+        }
+
+        return hits;
+    }
+
+    @Override
+    protected void release() {
+        // search_after 无服务端上下文
+    }
+}
@@ -0,0 +1,277 @@
+package com.spring.es.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 类描述：带截止时间与对冲请求的查询
+ * <p>
+ * 每个查询有截止时间, 到期未返回即以 TIMEOUT 结束. 调用方未设置服务端 timeout 时, 以截止时间的 80% 作为服务端 timeout
+ * (在请求副本上设置, 不修改调用方的请求), 分片到期停止查询, 部分结果在客户端截止前返回 (SearchResult.isPartial).
+ * 开启对冲且集群有多个节点时, 查询在最近成功查询耗时的 p95 (不低于 hedgeMinDelay) 内未返回, 再发送一次相同查询,
+ * 由客户端轮询发往另一节点, 先返回的结果生效; 首个查询在对冲发送前失败 (请求错误除外) 时立即发送对冲.
+ * 查询失败不抛异常, 以 {@link SearchResult} 返回失败类型
+ * <p>
+ * 当前客户端无法取消已发送的请求, 落后的响应直接丢弃
+ */
+@Slf4j
+public class SearchExecutor implements Closeable {
+
+    /**
+     * 对冲延迟使用的耗时分位
+     */
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    /**
+     * 服务端 timeout 占截止时间的比例 (留出协调节点合并与网络传输时间)
+     */
+    private static final double SERVER_TIMEOUT_RATIO = 0.8;
+
+    /**
+     * 统计最近多少次成功查询的耗时
+     */
+    private static final int LATENCY_WINDOW = 1024;
+
+    /**
+     * 样本数不足时不对冲
+     */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    /**
+     * 每记录多少次耗时重新计算分位
+     */
+    private static final int PERCENTILE_RECOMPUTE_INTERVAL = 32;
+
+    private final RestHighLevelClient client;
+    private final TimeValue defaultTimeout;
+    private final boolean hedge;
+    private final long hedgeMinDelayMillis;
+    private final ScheduledExecutorService scheduler;
+    private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW);
+
+    /**
+     * @param client
+     * @param defaultTimeout 默认截止时间
+     * @param hedge          是否发送对冲请求
+     * @param hedgeMinDelay  对冲延迟下限
+     */
+    public SearchExecutor(RestHighLevelClient client, TimeValue defaultTimeout, boolean hedge, TimeValue hedgeMinDelay) {
+        if (defaultTimeout.millis() <= 0) {
+            throw new IllegalArgumentException("查询截止时间必须大于 0");
+        }
+        this.client = client;
+        this.defaultTimeout = defaultTimeout;
+        this.hedge = hedge;
+        this.hedgeMinDelayMillis = hedgeMinDelay.millis();
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "search-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ((ScheduledThreadPoolExecutor) scheduler).setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 查询, 使用默认截止时间
+     *
+     * @param request
+     * @return
+     */
+    public SearchResult search(SearchRequest request) {
+        return search(request, defaultTimeout);
+    }
+
+    /**
+     * 查询, 阻塞到返回或截止时间
+     *
+     * @param request
+     * @param timeout
+     * @return
+     */
+    public SearchResult search(SearchRequest request, TimeValue timeout) {
+        return searchAsync(request, timeout).join();
+    }
+
+    /**
+     * 异步查询, 返回的 future 总是正常结束 (失败以 SearchResult 表示)
+     *
+     * @param request
+     * @param timeout 截止时间
+     * @return
+     */
+    public CompletableFuture<SearchResult> searchAsync(SearchRequest request, TimeValue timeout) {
+        long timeoutMillis = timeout.millis();
+        long hedgeDelay = hedgeDelayMillis();
+        HedgedSearch search = new HedgedSearch(withServerTimeout(request, timeoutMillis), hedgeDelay >= 0 && hedgeDelay < timeoutMillis);
+        search.send(false);
+
+        ScheduledFuture<?> deadline = scheduler.schedule(() -> {
+            if (search.result.complete(SearchResult.timeout(elapsedMillis(search.startNanos)))) {
+                log.warn("查询超时: {}ms, index: {}", timeoutMillis, Arrays.toString(request.indices()));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> hedgeTask = search.hedgePending()
+                ? scheduler.schedule(search::sendHedge, hedgeDelay, TimeUnit.MILLISECONDS)
+                : null;
+
+        search.result.whenComplete((searchResult, e) -> {
+            deadline.cancel(false);
+            if (Objects.nonNull(hedgeTask)) {
+                hedgeTask.cancel(false);
+            }
+        });
+        return search.result;
+    }
+
+    /**
+     * 调用方未设置服务端 timeout 时, 返回设置了 timeout (截止时间的 80%) 的请求副本
+     *
+     * @param request
+     * @param timeoutMillis 截止时间
+     * @return
+     */
+    private static SearchRequest withServerTimeout(SearchRequest request, long timeoutMillis) {
+        SearchSourceBuilder source = request.source();
+        if (Objects.isNull(source) || Objects.nonNull(source.timeout())) {
+            return request;
+        }
+
+        SearchRequest copy = new SearchRequest(request);
+        copy.source(source.copyWithNewSlice(source.slice())
+                .timeout(TimeValue.timeValueMillis(Math.max(1, (long) (timeoutMillis * SERVER_TIMEOUT_RATIO)))));
+        return copy;
+    }
+
+    /**
+     * 当前对冲延迟 (毫秒)
+     *
+     * @return 不对冲时返回 -1
+     */
+    public long hedgeDelayMillis() {
+        if (!hedge || client.getLowLevelClient().getNodes().size() < 2) {
+            return -1;
+        }
+
+        long percentile = latencies.percentile();
+        return percentile < 0 ? -1 : Math.max(percentile, hedgeMinDelayMillis);
+    }
+
+    /**
+     * 一次查询 (首个请求与可能的对冲请求)
+     * <p>
+     * outstanding 计入已发送与待发送的对冲请求, 全部失败时以最后一次失败结束
+     */
+    private final class HedgedSearch {
+
+        private final SearchRequest request;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<SearchResult> result = new CompletableFuture<>();
+        private final AtomicInteger outstanding;
+        private final AtomicBoolean hedgeSent;
+
+        private HedgedSearch(SearchRequest request, boolean hedge) {
+            this.request = request;
+            this.outstanding = new AtomicInteger(hedge ? 2 : 1);
+            this.hedgeSent = new AtomicBoolean(!hedge);
+        }
+
+        private boolean hedgePending() {
+            return !hedgeSent.get();
+        }
+
+        /**
+         * 发送对冲请求 (到达对冲延迟, 或首个请求提前失败时), 只发送一次
+         */
+        private void sendHedge() {
+            if (hedgeSent.compareAndSet(false, true) && !result.isDone()) {
+                send(true);
+            }
+        }
+
+        private void send(boolean hedged) {
+            long sendNanos = System.nanoTime();
+            client.searchAsync(request, EsRequestOptions.largeResponse(client), new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse response) {
+                    latencies.record(elapsedMillis(sendNanos));
+                    if (result.complete(SearchResult.success(response, hedged, elapsedMillis(startNanos))) && hedged) {
+                        log.debug("对冲查询先返回, index: {}", Arrays.toString(request.indices()));
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    SearchResult failure = SearchResult.failure(e, elapsedMillis(startNanos));
+                    // 请求错误换节点重试无意义
+                    boolean last = outstanding.decrementAndGet() == 0 || failure.getFailureType() == SearchResult.FailureType.CLIENT_ERROR;
+                    if (last) {
+                        if (result.complete(failure)) {
+                            log.error("查询失败, index: {}", Arrays.toString(request.indices()), e);
+                        }
+                    } else {
+                        sendHedge();
+                    }
+                }
+            });
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 最近成功查询耗时 (环形缓冲), 分位值定期重新计算
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples;
+        private int count;
+        private int next;
+        private int sinceRecompute;
+        private volatile long percentile = -1;
+
+        private LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+            if (count >= MIN_LATENCY_SAMPLES && (percentile < 0 || ++sinceRecompute >= PERCENTILE_RECOMPUTE_INTERVAL)) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                percentile = sorted[(int) Math.ceil(HEDGE_PERCENTILE * count) - 1];
+                sinceRecompute = 0;
+            }
+        }
+
+        long percentile() {
+            return percentile;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.spring.es.plugin;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * 类描述：查询结果 (成功时为 SearchResponse, 失败时为失败类型与原因, 不抛异常)
+ */
+@Getter
+@ToString(exclude = "response")
+public class SearchResult {
+
+    /**
+     * 失败类型
+     */
+    public enum FailureType {
+
+        /**
+         * 超过请求截止时间
+         */
+        TIMEOUT,
+
+        /**
+         * 集群拒绝 (429, 查询队列已满)
+         */
+        REJECTED,
+
+        /**
+         * 请求错误 (4xx, 重试无意义)
+         */
+        CLIENT_ERROR,
+
+        /**
+         * 服务端错误 (5xx)
+         */
+        SERVER_ERROR,
+
+        /**
+         * 连接 / 读取失败
+         */
+        IO_ERROR
+    }
+
+    /**
+     * 查询响应, 失败时为 null
+     */
+    private final SearchResponse response;
+
+    /**
+     * 失败类型, 成功时为 null
+     */
+    private final FailureType failureType;
+
+    /**
+     * 失败状态码 (超时为 408, 连接失败为 503), 成功时为 null
+     */
+    private final RestStatus status;
+
+    private final String message;
+
+    /**
+     * 是否由对冲请求返回
+     */
+    private final boolean hedged;
+
+    /**
+     * 客户端耗时 (毫秒)
+     */
+    private final long tookInMillis;
+
+    private SearchResult(SearchResponse response, FailureType failureType, RestStatus status, String message,
+                         boolean hedged, long tookInMillis) {
+        this.response = response;
+        this.failureType = failureType;
+        this.status = status;
+        this.message = message;
+        this.hedged = hedged;
+        this.tookInMillis = tookInMillis;
+    }
+
+    public static SearchResult success(SearchResponse response, boolean hedged, long tookInMillis) {
+        return new SearchResult(response, null, null, null, hedged, tookInMillis);
+    }
+
+    public static SearchResult timeout(long tookInMillis) {
+        return new SearchResult(null, FailureType.TIMEOUT, RestStatus.REQUEST_TIMEOUT, "查询超过截止时间 " + tookInMillis + "ms",
+                false, tookInMillis);
+    }
+
+    /**
+     * 按异常归类失败
+     *
+     * @param e
+     * @param tookInMillis
+     * @return
+     */
+    public static SearchResult failure(Exception e, long tookInMillis) {
+        if (e instanceof ElasticsearchException) {
+            RestStatus status = ((ElasticsearchException) e).status();
+            FailureType failureType = status == RestStatus.TOO_MANY_REQUESTS ? FailureType.REJECTED
+                    : status.getStatus() >= 500 ? FailureType.SERVER_ERROR : FailureType.CLIENT_ERROR;
+            return new SearchResult(null, failureType, status, e.getMessage(), false, tookInMillis);
+        }
+        if (e instanceof IOException) {
+            return new SearchResult(null, FailureType.IO_ERROR, RestStatus.SERVICE_UNAVAILABLE, e.toString(), false, tookInMillis);
+        }
+
+        return new SearchResult(null, FailureType.CLIENT_ERROR, RestStatus.BAD_REQUEST, e.toString(), false, tookInMillis);
+    }
+
+    public boolean isSuccess() {
+        return Objects.nonNull(response);
+    }
+
+    /**
+     * 成功但部分分片超时 / 失败 (结果不完整)
+     *
+     * @return
+     */
+    public boolean isPartial() {
+        return isSuccess() && (response.isTimedOut() || response.getFailedShards() > 0);
+    }
+}
@@ -0,0 +1,186 @@
+package com.spring.es.plugin;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 类描述：客户端查询结果缓存
+ * <p>
+ * 以 索引 / type / routing / 查询体 (SearchSourceBuilder 的 JSON) 为键, 有效期为实体 Document 注解的 refreshInterval
+ * (新写入的数据在一个刷新间隔后才可见, 缓存不会比集群多落后一个刷新间隔; refreshInterval 为 -1 的实体不缓存).
+ * 超过 maxEntries 时淘汰最久未使用的条目. 只缓存完整的结果 (无分片失败 / 超时), 不缓存 scroll 查询
+ * <p>
+ * 缓存的 SearchResponse 由调用方共享, 不能修改
+ */
+public class SearchResultCache {
+
+    private static final ClassValue<Long> TTL_MILLIS = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            String refreshInterval = EntityMetadata.of(type).requireDocument().refreshInterval();
+            return TimeValue.parseTimeValue(refreshInterval, "refresh_interval").millis();
+        }
+    };
+
+    private final int maxEntries;
+
+    /**
+     * 访问顺序的 LinkedHashMap, 由 this 加锁保护
+     */
+    private final LinkedHashMap<String, CachedResponse> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries 最大缓存条数, 小于等于 0 时不缓存
+     */
+    public SearchResultCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > SearchResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * 查询, 缓存有效时不请求集群 (见 EsUtils.getSearchResponse)
+     *
+     * @param client
+     * @param clazz   Document 实体类 (决定缓存有效期)
+     * @param request
+     * @return
+     */
+    public SearchResponse getSearchResponse(RestHighLevelClient client, Class<?> clazz, SearchRequest request) {
+        SearchResponse response = get(clazz, request);
+        if (Objects.isNull(response)) {
+            response = EsUtils.getSearchResponse(client, request);
+            put(clazz, request, response);
+        }
+
+        return response;
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param clazz
+     * @param request
+     * @return 未缓存或已过期时返回 null
+     */
+    public SearchResponse get(Class<?> clazz, SearchRequest request) {
+        if (!isCacheable(clazz, request)) {
+            return null;
+        }
+
+        String key = key(request);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            CachedResponse cached = entries.get(key);
+            if (Objects.nonNull(cached) && cached.expireAt > now) {
+                hits.increment();
+                return cached.response;
+            }
+            if (Objects.nonNull(cached)) {
+                entries.remove(key);
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 缓存查询结果 (不完整的结果不缓存)
+     *
+     * @param clazz
+     * @param request
+     * @param response
+     */
+    public void put(Class<?> clazz, SearchRequest request, SearchResponse response) {
+        if (!isCacheable(clazz, request) || response.getTotalShards() == 0
+                || response.isTimedOut() || response.getFailedShards() > 0) {
+            return;
+        }
+
+        CachedResponse cached = new CachedResponse(response, System.currentTimeMillis() + TTL_MILLIS.get(clazz));
+        String key = key(request);
+        synchronized (this) {
+            entries.put(key, cached);
+        }
+    }
+
+    /**
+     * 清空缓存 (如删除 / 覆盖写入后需要立即可见时)
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private boolean isCacheable(Class<?> clazz, SearchRequest request) {
+        return isEnabled() && Objects.isNull(request.scroll()) && TTL_MILLIS.get(clazz) > 0;
+    }
+
+    /**
+     * 缓存键: 相同 索引 / type / routing / preference / 查询体 的请求相同.
+     * timeout 不参与 (超时的部分结果不缓存)
+     *
+     * @param request
+     * @return
+     */
+    private static String key(SearchRequest request) {
+        StringBuilder key = new StringBuilder(256);
+        key.append(String.join(",", request.indices())).append('/')
+                .append(String.join(",", request.types())).append('/')
+                .append(request.routing()).append('/')
+                .append(request.preference()).append('/')
+                .append(request.searchType()).append('/');
+        SearchSourceBuilder source = request.source();
+        if (Objects.nonNull(source)) {
+            if (Objects.nonNull(source.timeout())) {
+                source = source.copyWithNewSlice(source.slice()).timeout(null);
+            }
+            key.append(Strings.toString(source));
+        }
+
+        return key.toString();
+    }
+
+    private static final class CachedResponse {
+
+        private final SearchResponse response;
+        private final long expireAt;
+
+        private CachedResponse(SearchResponse response, long expireAt) {
+            this.response = response;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.spring.es.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 类描述：切片并行导出 (sliced scroll)
+ * <p>
+ * 将同一查询切分为 slices 个互不重叠的 scroll, 在 executor 上并发拉取; 查询条件可直接使用
+ * {@link EsUtils#listByQueryBuild} 的结果. slices 一般不超过索引分片数, 超过后每个切片需要在分片内额外过滤
+ */
+@Slf4j
+public class SlicedScrollExporter {
+
+    /**
+     * stream 模式下 切片与消费方之间的缓冲条数
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 10_000;
+
+    private final RestHighLevelClient client;
+    private final ExecutorService executor;
+
+    /**
+     * @param client
+     * @param executor 执行切片的线程池 (线程数应不小于切片数, 否则切片排队执行)
+     */
+    public SlicedScrollExporter(RestHighLevelClient client, ExecutorService executor) {
+        this.client = client;
+        this.executor = executor;
+    }
+
+    /**
+     * 并行导出, 阻塞直到所有切片完成; 任一切片失败时取消其余切片并抛出异常
+     *
+     * @param sourceBuilder 查询条件 (不会被修改)
+     * @param indexName
+     * @param typeName
+     * @param slices        切片数
+     * @param pageSize      每页条数
+     * @param keepAlive     scroll 上下文保留时间
+     * @param clazz
+     * @param consumer      会被多个线程同时调用, 需线程安全
+     * @return 导出条数
+     */
+    public <T> long export(SearchSourceBuilder sourceBuilder, String indexName, String typeName, int slices, int pageSize,
+                           TimeValue keepAlive, Class<T> clazz, Consumer<? super T> consumer) throws InterruptedException {
+        AtomicLong count = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>(slices);
+        for (int sliceId = 0; sliceId < slices; sliceId++) {
+            ScrollIterator<T> iterator = sliceIterator(sourceBuilder, indexName, typeName, sliceId, slices, pageSize, keepAlive, clazz);
+            futures.add(executor.submit(() -> {
+                try {
+                    while (iterator.hasNext() && !Thread.currentThread().isInterrupted()) {
+                        consumer.accept(iterator.next());
+                        count.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    closeQuietly(iterator, e);
+                    throw e;
+                }
+                iterator.close();
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+
+        return count.get();
+    }
+
+    /**
+     * 并行导出为单个 Stream (切片结果经有界队列合并, 顺序不保证); 使用完需关闭 Stream
+     *
+     * @param sourceBuilder 查询条件 (不会被修改)
+     * @param indexName
+     * @param typeName
+     * @param slices        切片数
+     * @param pageSize      每页条数
+     * @param keepAlive     scroll 上下文保留时间
+     * @param clazz
+     * @return
+     */
+    public <T> Stream<T> stream(SearchSourceBuilder sourceBuilder, String indexName, String typeName, int slices, int pageSize,
+                                TimeValue keepAlive, Class<T> clazz) {
+        MergingIterator<T> merging = new MergingIterator<>(slices, Math.max(DEFAULT_BUFFER_SIZE, slices * pageSize));
+        for (int sliceId = 0; sliceId < slices; sliceId++) {
+            ScrollIterator<T> iterator = sliceIterator(sourceBuilder, indexName, typeName, sliceId, slices, pageSize, keepAlive, clazz);
+            merging.futures.add(executor.submit(() -> merging.produce(iterator)));
+        }
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merging, Spliterator.NONNULL), false)
+                .onClose(merging::cancel);
+    }
+
+    private <T> ScrollIterator<T> sliceIterator(SearchSourceBuilder sourceBuilder, String indexName, String typeName, int sliceId,
+                                                int slices, int pageSize, TimeValue keepAlive, Class<T> clazz) {
+        SearchSourceBuilder sliceSource = slices > 1 ? sourceBuilder.copyWithNewSlice(new SliceBuilder(sliceId, slices)) : sourceBuilder;
+        return new ScrollIterator<>(client, sliceSource, indexName, typeName, pageSize, keepAlive, hit -> EsUtils.hitToObj(hit, clazz));
+    }
+
+    /**
+     * 切片已失败时关闭迭代器, 关闭异常附加到原异常上, 不掩盖真正的失败原因
+     */
+    private static void closeQuietly(ScrollIterator<?> iterator, Throwable error) {
+        try {
+            iterator.close();
+        } catch (RuntimeException e) {
+            error.addSuppressed(e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+
+        return new IllegalStateException("切片导出失败", cause);
+    }
+
+    /**
+     * 切片结束标记
+     */
+    private static final class SliceEnd {
+        private final Throwable error;
+
+        private SliceEnd(Throwable error) {
+            this.error = error;
+        }
+    }
+
+    /**
+     * 合并多个切片的结果
+     */
+    private static final class MergingIterator<T> implements Iterator<T> {
+
+        private final BlockingQueue<Object> queue;
+        private final List<Future<?>> futures = new ArrayList<>();
+        private volatile boolean cancelled;
+        private int runningSlices;
+        private Object nextElement;
+
+        private MergingIterator(int slices, int bufferSize) {
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+            this.runningSlices = slices;
+        }
+
+        private void produce(ScrollIterator<T> iterator) {
+            Throwable error = null;
+            try {
+                while (!cancelled && iterator.hasNext()) {
+                    T element = iterator.next();
+                    while (!cancelled && !queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+                        // 消费方处理较慢, 继续等待
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                try {
+                    iterator.close();
+                } catch (RuntimeException e) {
+                    if (error == null) {
+                        error = e;
+                    } else {
+                        error.addSuppressed(e);
+                    }
+                }
+                finish(error);
+            }
+        }
+
+        /**
+         * 投递切片结束标记; 消费方依赖它计数, 所以即使线程已被中断也要投递, 直到成功或消费方取消
+         */
+        private void finish(Throwable error) {
+            SliceEnd end = new SliceEnd(error);
+            boolean interrupted = Thread.interrupted();
+            try {
+                while (!cancelled) {
+                    try {
+                        if (queue.offer(end, 100, TimeUnit.MILLISECONDS)) {
+                            return;
+                        }
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            while (nextElement == null && runningSlices > 0 && !cancelled) {
+                Object element;
+                try {
+                    element = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                    throw new CancellationException("切片导出被中断");
+                }
+
+                if (element instanceof SliceEnd) {
+                    runningSlices--;
+                    Throwable error = ((SliceEnd) element).error;
+                    if (error != null) {
+                        cancel();
+                        throw propagate(error);
+                    }
+                } else {
+                    nextElement = element;
+                }
+            }
+
+            return nextElement != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            T element = (T) nextElement;
+            nextElement = null;
+            return element;
+        }
+
+        private void cancel() {
+            cancelled = true;
+            futures.forEach(future -> future.cancel(true));
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.spring.es.plugin.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * 类描述：组合 id
+ * <p>
+ * 文档 id 由多个属性值按顺序拼接而成, 相同业务键的重复写入会覆盖同一文档 (幂等);
+ * 类中存在 {@link Id} 属性时以 Id 为准
+ */
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+@Documented
+public @interface CompositeId {
+
+    /**
+     * 组成 id 的属性名 (按顺序)
+     */
+    String[] fields();
+
+    /**
+     * 分隔符
+     */
+    String separator() default "|";
+}
@@ -35,4 +35,21 @@ public @interface Document {
      * 刷新间隔
      */
     String refreshInterval() default "1s";
+
+    /**
+     * 按时间分区 (分区时 indexName 为查询别名, 写入路由到对应时间的分区索引)
+     */
+    Partition partition() default Partition.NONE;
+
+    /**
+     * 决定所属分区的时间属性 (毫秒时间戳 / Date / yyyy-MM-dd 字符串), 为空时按写入时间.
+     * 应为文档写入后不再变化的属性, 否则同一 id 会写入不同分区, 通过别名查询时重复
+     */
+    String timestampField() default "";
+
+    /**
+     * 判断过期的时间属性 (毫秒时间戳, 如入库时间), 为空时只按分区整体删除.
+     * 用于分区时间与数据过期时间不一致的场景 (如按出发日期分区, 但未出发月份中过早抓取的数据也需清理)
+     */
+    String expireField() default "";
 }
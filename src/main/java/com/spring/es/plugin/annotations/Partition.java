@@ -0,0 +1,51 @@
+package com.spring.es.plugin.annotations;
+
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 类描述：索引按时间分区
+ * <p>
+ * 分区索引名为 indexName-时间 (UTC), indexName 作为覆盖全部分区的别名用于查询
+ */
+public enum Partition {
+
+    /**
+     * 不分区, indexName 即索引名
+     */
+    NONE("", ChronoUnit.FOREVER),
+
+    /**
+     * 按月, 如 traffic_index-2019.12
+     */
+    MONTHLY("yyyy.MM", ChronoUnit.MONTHS),
+
+    /**
+     * 按天, 如 traffic_index-2019.12.17
+     */
+    DAILY("yyyy.MM.dd", ChronoUnit.DAYS),
+
+    /**
+     * 按小时, 如 traffic_index-2019.12.17.08
+     */
+    HOURLY("yyyy.MM.dd.HH", ChronoUnit.HOURS);
+
+    private final String pattern;
+
+    /**
+     * 单个分区覆盖的时间长度
+     */
+    private final ChronoUnit unit;
+
+    Partition(String pattern, ChronoUnit unit) {
+        this.pattern = pattern;
+        this.unit = unit;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+}
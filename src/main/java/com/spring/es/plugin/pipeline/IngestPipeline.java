@@ -0,0 +1,155 @@
+package com.spring.es.plugin.pipeline;
+
+import com.spring.es.plugin.BulkIngester;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.DocWriteRequest;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * 类描述：多阶段并行写入流水线
+ * <p>
+ * 解析 (parse) -> 补全 (enrich, 可选) -> 序列化 (serialize) -> 提交 (bulk)
+ * <p>
+ * 序列化阶段由调用方提供写请求构造逻辑, 可以是新增 (如 {@link com.spring.es.plugin.DocumentSerializer#toIndexRequest}),
+ * 也可以是与单条写入一致的脚本 upsert
+ * <p>
+ * 各阶段之间为有界队列, 解析与序列化按 CPU 核数配置工作线程; 提交阶段只负责写入 {@link BulkIngester},
+ * 实际 http 并发由其 concurrentRequests 控制. 任一队列满时阻塞上游, 最终阻塞 submit 调用方
+ *
+ * @param <S> 数据源类型 (如 Reader)
+ * @param <T> Document 实体类型
+ */
+@Slf4j
+public class IngestPipeline<S, T> implements Closeable {
+
+    private final PipelineStage<S, T> parseStage;
+    private final PipelineStage<T, T> enrichStage;
+    private final PipelineStage<T, DocWriteRequest<?>> serializeStage;
+    private final PipelineStage<DocWriteRequest<?>, Void> bulkStage;
+    private final BulkIngester bulkIngester;
+
+    private volatile boolean closed;
+
+    /**
+     * 无补全阶段的流水线
+     *
+     * @param name             流水线名 (线程名前缀)
+     * @param parser           数据源解析, 每解析出一条实体即输出
+     * @param requestBuilder   实体转写请求
+     * @param bulkIngester     批量写入器
+     * @param queueCapacity    每个阶段的输入队列容量
+     * @param parseWorkers     解析线程数
+     * @param serializeWorkers 序列化线程数
+     */
+    public IngestPipeline(String name, BiConsumer<S, Consumer<T>> parser, Function<? super T, ? extends DocWriteRequest<?>> requestBuilder,
+                          BulkIngester bulkIngester, int queueCapacity, int parseWorkers, int serializeWorkers) {
+        this(name, parser, null, requestBuilder, bulkIngester, queueCapacity, parseWorkers, 0, serializeWorkers);
+    }
+
+    /**
+     * @param name             流水线名 (线程名前缀)
+     * @param parser           数据源解析, 每解析出一条实体即输出
+     * @param enricher         补全逻辑, 为 null 时跳过该阶段
+     * @param requestBuilder   实体转写请求
+     * @param bulkIngester     批量写入器
+     * @param queueCapacity    每个阶段的输入队列容量
+     * @param parseWorkers     解析线程数
+     * @param enrichWorkers    补全线程数
+     * @param serializeWorkers 序列化线程数
+     */
+    public IngestPipeline(String name, BiConsumer<S, Consumer<T>> parser, UnaryOperator<T> enricher,
+                          Function<? super T, ? extends DocWriteRequest<?>> requestBuilder,
+                          BulkIngester bulkIngester, int queueCapacity, int parseWorkers, int enrichWorkers, int serializeWorkers) {
+        this.bulkIngester = bulkIngester;
+
+        this.bulkStage = new PipelineStage<>(name + "-bulk", 1, queueCapacity,
+                (request, out) -> bulkIngester.add(request), out -> {
+        });
+        this.serializeStage = new PipelineStage<>(name + "-serialize", serializeWorkers, queueCapacity,
+                (entity, out) -> out.accept(requestBuilder.apply(entity)), bulkStage::accept);
+        if (Objects.nonNull(enricher)) {
+            this.enrichStage = new PipelineStage<>(name + "-enrich", enrichWorkers, queueCapacity,
+                    (entity, out) -> out.accept(enricher.apply(entity)), serializeStage::accept);
+            this.parseStage = new PipelineStage<>(name + "-parse", parseWorkers, queueCapacity, parser, enrichStage::accept);
+        } else {
+            this.enrichStage = null;
+            this.parseStage = new PipelineStage<>(name + "-parse", parseWorkers, queueCapacity, parser, serializeStage::accept);
+        }
+
+        bulkStage.start();
+        serializeStage.start();
+        if (Objects.nonNull(enrichStage)) {
+            enrichStage.start();
+        }
+        parseStage.start();
+    }
+
+    /**
+     * 提交数据源, 解析队列满时阻塞
+     *
+     * @param source
+     * @throws InterruptedException
+     */
+    public void submit(S source) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("流水线已关闭");
+        }
+
+        parseStage.put(source);
+    }
+
+    /**
+     * 各阶段指标 (按流水线顺序)
+     *
+     * @return
+     */
+    public List<StageMetrics> metrics() {
+        List<StageMetrics> metrics = new ArrayList<>(4);
+        metrics.add(parseStage.metrics());
+        if (Objects.nonNull(enrichStage)) {
+            metrics.add(enrichStage.metrics());
+        }
+        metrics.add(serializeStage.metrics());
+        metrics.add(bulkStage.metrics());
+        return metrics;
+    }
+
+    /**
+     * 逐级排空各阶段后, 把写入器中剩余的请求提交出去
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            parseStage.finish();
+            if (Objects.nonNull(enrichStage)) {
+                enrichStage.finish();
+            }
+            serializeStage.finish();
+            bulkStage.finish();
+            bulkIngester.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("流水线关闭被中断, 丢弃未处理数据");
+            parseStage.abort();
+            if (Objects.nonNull(enrichStage)) {
+                enrichStage.abort();
+            }
+            serializeStage.abort();
+            bulkStage.abort();
+        }
+        log.info("流水线已关闭: {}", metrics());
+    }
+}
@@ -0,0 +1,154 @@
+package com.spring.es.plugin.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 类描述：流水线阶段
+ * <p>
+ * 有界输入队列 + 固定数量的工作线程; 每条输入可输出 0..n 条到下游,
+ * 下游队列满时工作线程阻塞, 从而把背压逐级传回到提交方
+ */
+@Slf4j
+public class PipelineStage<I, O> {
+
+    /**
+     * 结束标记 (每个工作线程一个)
+     */
+    private static final Object END = new Object();
+
+    private final String name;
+    private final int queueCapacity;
+    private final BlockingQueue<Object> queue;
+    private final BiConsumer<I, Consumer<O>> processor;
+    private final Consumer<O> emitter;
+    private final Thread[] workers;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder emitted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile long startNanos;
+
+    /**
+     * @param name          阶段名 (同时作为线程名前缀)
+     * @param workerCount   工作线程数
+     * @param queueCapacity 输入队列容量
+     * @param processor     处理逻辑, 通过第二个参数向下游输出
+     * @param downstream    下游 (通常为下一阶段的 put)
+     */
+    public PipelineStage(String name, int workerCount, int queueCapacity, BiConsumer<I, Consumer<O>> processor, Consumer<O> downstream) {
+        if (workerCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("工作线程数与队列容量必须大于 0");
+        }
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.processor = processor;
+        this.emitter = output -> {
+            emitted.increment();
+            downstream.accept(output);
+        };
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::work, name + "-" + i);
+            workers[i].setDaemon(true);
+        }
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * 提交输入, 队列满时阻塞
+     *
+     * @param input
+     * @throws InterruptedException
+     */
+    public void put(I input) throws InterruptedException {
+        queue.put(input);
+    }
+
+    /**
+     * 作为上游阶段的 downstream 使用 (中断时以 CancellationException 结束上游处理)
+     *
+     * @param input
+     */
+    public void accept(I input) {
+        try {
+            queue.put(input);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException(name + " 提交被中断");
+        }
+    }
+
+    /**
+     * 处理完队列中剩余输入后停止, 阻塞直到全部工作线程退出
+     *
+     * @throws InterruptedException
+     */
+    public void finish() throws InterruptedException {
+        for (int i = 0; i < workers.length; i++) {
+            queue.put(END);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * 立即停止 (丢弃未处理的输入)
+     */
+    public void abort() {
+        queue.clear();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    public StageMetrics metrics() {
+        long processedCount = processed.sum();
+        double elapsedSeconds = startNanos == 0 ? 0 : (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        return new StageMetrics(name, workers.length, processedCount, emitted.sum(), failed.sum(), queue.size(), queueCapacity,
+                elapsedSeconds > 0 ? processedCount / elapsedSeconds : 0);
+    }
+
+    private void work() {
+        while (true) {
+            Object input;
+            try {
+                input = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (input == END) {
+                return;
+            }
+
+            // 队列中除 END 外只有 put 进来的 I
+            @SuppressWarnings("unchecked")
+            I item = (I) input;
+            try {
+                processor.accept(item, emitter);
+            } catch (CancellationException e) {
+                return;
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.error("{} 处理失败", name, e);
+            } finally {
+                processed.increment();
+            }
+        }
+    }
+}
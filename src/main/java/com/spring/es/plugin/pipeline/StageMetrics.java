@@ -0,0 +1,64 @@
+package com.spring.es.plugin.pipeline;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 类描述：流水线阶段指标 (快照)
+ */
+@Getter
+@ToString
+public class StageMetrics {
+
+    /**
+     * 阶段名
+     */
+    private final String name;
+
+    /**
+     * 工作线程数
+     */
+    private final int workers;
+
+    /**
+     * 已处理的输入条数
+     */
+    private final long processed;
+
+    /**
+     * 已输出到下游的条数
+     */
+    private final long emitted;
+
+    /**
+     * 处理失败条数
+     */
+    private final long failed;
+
+    /**
+     * 输入队列当前长度
+     */
+    private final int queueDepth;
+
+    /**
+     * 输入队列容量
+     */
+    private final int queueCapacity;
+
+    /**
+     * 平均吞吐 (输入条数 / 秒)
+     */
+    private final double throughputPerSecond;
+
+    public StageMetrics(String name, int workers, long processed, long emitted, long failed, int queueDepth, int queueCapacity,
+                        double throughputPerSecond) {
+        this.name = name;
+        this.workers = workers;
+        this.processed = processed;
+        this.emitted = emitted;
+        this.failed = failed;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.throughputPerSecond = throughputPerSecond;
+    }
+}
@@ -1,35 +1,60 @@
 package com.spring.es.service;
 
-import com.alibaba.fastjson.JSON;
 import com.spring.es.config.es.ElasticClientDecorator;
+import com.spring.es.config.es.ElasticsProperties;
 import com.spring.es.model.entity.TrafficInfo;
+import com.spring.es.plugin.AsyncBulkExecutor;
+import com.spring.es.plugin.BulkIngester;
+import com.spring.es.plugin.BulkLoadMode;
+import com.spring.es.plugin.BulkResult;
+import com.spring.es.plugin.BulkRetryPolicy;
+import com.spring.es.plugin.DocumentSerializer;
 import com.spring.es.plugin.EsBulkUtils;
+import com.spring.es.plugin.EntityMetadata;
 import com.spring.es.plugin.EsUtils;
 import com.spring.es.plugin.IndexBuilder;
+import com.spring.es.plugin.MultiSearchBatcher;
+import com.spring.es.plugin.RecentKeyCache;
+import com.spring.es.plugin.SearchExecutor;
+import com.spring.es.plugin.SearchResult;
+import com.spring.es.plugin.SearchResultCache;
+import com.spring.es.plugin.pipeline.IngestPipeline;
+import com.spring.es.plugin.pipeline.StageMetrics;
 import com.spring.es.utils.CommonUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpHost;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.delete.DeleteRequest;
-import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.common.unit.TimeValue;
-import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.*;
-import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 /**
  * 类描述：
@@ -41,6 +66,75 @@ public class IndexService {
     @Autowired
     private RestHighLevelClient restHighLevelClient;
 
+    @Autowired
+    private BulkIngester bulkIngester;
+
+    @Autowired
+    private AsyncBulkExecutor asyncBulkExecutor;
+
+    @Autowired
+    private ElasticsProperties elasticsProperties;
+
+    @Autowired
+    private BulkRetryPolicy bulkRetryPolicy;
+
+    @Autowired
+    private SearchExecutor searchExecutor;
+
+    @Autowired
+    private MultiSearchBatcher multiSearchBatcher;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    /**
+     * 全量导入时 单次 bulk 条数
+     */
+    private static final int RELOAD_BULK_ACTIONS = 1000;
+
+    /**
+     * 并发刷新同一票价时的冲突重试次数
+     */
+    private static final int UPSERT_RETRY_ON_CONFLICT = 3;
+
+    /**
+     * 刷新票价脚本
+     */
+    private static final String REFRESH_FARE_SCRIPT = "ctx._source.dataTime = params.dataTime; "
+            + "ctx._source.price = params.price; "
+            + "ctx._source.numberOfCabins = params.numberOfCabins";
+
+    /**
+     * 多线程写入流水线 (解析 -> 序列化 -> 提交), 与 insert 一样以脚本 upsert 写入票价
+     */
+    private IngestPipeline<Reader, TrafficInfo> ingestPipeline;
+
+    /**
+     * 最近写入的票价 (id 指纹 -> 价格 / 舱位数指纹)
+     */
+    private RecentKeyCache recentFares;
+
+    @PostConstruct
+    public void initRecentFares() {
+        recentFares = new RecentKeyCache(elasticsProperties.getDedupeCacheSize(),
+                TimeValue.parseTimeValue(elasticsProperties.getDedupeCacheTtl(), "dedupe-cache-ttl").millis());
+    }
+
+    @PostConstruct
+    public void initIngestPipeline() {
+        DocumentSerializer<TrafficInfo> serializer = DocumentSerializer.of(TrafficInfo.class);
+        ingestPipeline = new IngestPipeline<>("traffic-ingest", CommonUtils::parsingJsonData,
+                trafficInfo -> fareUpsertRequest(serializer, trafficInfo), bulkIngester,
+                elasticsProperties.getPipelineQueueCapacity(),
+                elasticsProperties.getPipelineParseWorkers(),
+                elasticsProperties.getPipelineSerializeWorkers());
+    }
+
+    @PreDestroy
+    public void closeIngestPipeline() {
+        ingestPipeline.close();
+    }
+
     public static void main(String[] args) {
         String url = "es-cn-mp91ev3o900031dj7.public.elasticsearch.aliyuncs.com";
         Integer port = 9200;
@@ -64,71 +158,221 @@ public class IndexService {
 
     }
 
+    /**
+     * 查询航线某日的票价 (按截止时间返回, 失败时返回失败类型; 开启查询缓存时优先使用缓存)
+     *
+     * @param siteStartAndEnd 出发站 到达站
+     * @param departureDate   出发日期
+     * @param size            最多返回条数
+     * @return
+     */
+    public SearchResult findFares(String siteStartAndEnd, String departureDate, int size) {
+        SearchRequest searchRequest = faresRequest(siteStartAndEnd, departureDate, size);
+        SearchResponse cached = searchResultCache.get(TrafficInfo.class, searchRequest);
+        if (Objects.nonNull(cached)) {
+            return SearchResult.success(cached, false, 0);
+        }
+
+        SearchResult searchResult = searchExecutor.search(searchRequest);
+        if (searchResult.isSuccess()) {
+            searchResultCache.put(TrafficInfo.class, searchRequest, searchResult.getResponse());
+        }
+        return searchResult;
+    }
+
+    /**
+     * 查询航线某日的票价, 与同时到达的其他查询合并为一次 _msearch (适合大量并发的小查询)
+     *
+     * @param siteStartAndEnd 出发站 到达站
+     * @param departureDate   出发日期
+     * @param size            最多返回条数
+     * @return
+     */
+    public CompletableFuture<SearchResult> findFaresBatched(String siteStartAndEnd, String departureDate, int size) {
+        return multiSearchBatcher.submit(faresRequest(siteStartAndEnd, departureDate, size));
+    }
+
+    private static SearchRequest faresRequest(String siteStartAndEnd, String departureDate, int size) {
+        BoolQueryBuilder boolBuilder = QueryBuilders.boolQuery()
+                .filter(QueryBuilders.matchPhraseQuery("siteStartAndEnd", siteStartAndEnd))
+                .filter(QueryBuilders.termQuery("departureDate", departureDate));
+        SearchSourceBuilder searchSourceBuilder = EsUtils.pageByQueryBuild(boolBuilder, 1, size, null);
+        return EsUtils.getSearchRequest(searchSourceBuilder,
+                IndexBuilder.getIndexName(TrafficInfo.class), IndexBuilder.getType(TrafficInfo.class));
+    }
+
     /**
      * 注意 id 不要重复 重复会发生数据覆盖
      */
     public static void insertDataToIndex(RestHighLevelClient restHighLevelClient) {
         String value = "{\t\"DMK-KUL\": {\t\t\"2019-12-17\": {\t\t\t\"FD311\": [{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"},{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"},{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"}],\t\t\t\"AK891\": [{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"},{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"},{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"}],\t\t\t\"AK881\": [{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"},{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"},{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"}],\t\t\t\"AK883\": [{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"},{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"},{\"s\":\"1574231171\",\"p\":\"862.51\",\"c\":\"Z\"}]\t\t}\t}}";
-        List<TrafficInfo> trafficInfos = CommonUtils.parsingJsonData(value);
-        if (trafficInfos.size() == 0) {
+        // 解析结果直接序列化进 BulkRequest, 不保留中间 List
+        DocumentSerializer<TrafficInfo> serializer = DocumentSerializer.of(TrafficInfo.class);
+        BulkRequest bulkRequest = new BulkRequest();
+        CommonUtils.parsingJsonData(new StringReader(value), trafficInfo -> bulkRequest.add(serializer.toIndexRequest(trafficInfo)));
+        if (bulkRequest.numberOfActions() == 0) {
             return;
         }
 
-        List<IndexRequest> indexRequests = new ArrayList<>();
-        for (TrafficInfo trafficInfo : trafficInfos) {
-            IndexRequest indexRequest = new IndexRequest(IndexBuilder.getIndexName(TrafficInfo.class), IndexBuilder.getType(TrafficInfo.class));
-            indexRequest.source(JSON.toJSONString(trafficInfo), XContentType.JSON);
-            indexRequests.add(indexRequest);
-        }
+        bulkRequest.setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
         // 批量新增
-        EsBulkUtils.bulkRequest(restHighLevelClient, indexRequests, WriteRequest.RefreshPolicy.IMMEDIATE);
+        EsBulkUtils.bulkRequest(restHighLevelClient, bulkRequest);
+    }
+
+    /**
+     * 流式导入数据源: 边解析边写入后台批量写入器, 内存占用只与单个 bulk 大小相关
+     *
+     * @param reader 数据源 (站点 -> 日期 -> 航班号 -> 票价数组)
+     * @return 解析条数
+     */
+    public long ingest(Reader reader) {
+        return CommonUtils.parsingJsonData(reader, bulkIngester.sink(TrafficInfo.class));
     }
 
+    /**
+     * 提交数据源到多线程写入流水线 (异步, 流水线满时阻塞)
+     *
+     * @param reader 数据源 (站点 -> 日期 -> 航班号 -> 票价数组), 解析完成后关闭
+     */
+    public void submitFeed(Reader reader) throws InterruptedException {
+        ingestPipeline.submit(reader);
+    }
 
+    /**
+     * 写入流水线 各阶段吞吐与队列长度
+     */
+    public List<StageMetrics> ingestPipelineMetrics() {
+        return ingestPipeline.metrics();
+    }
+
+
+    /**
+     * 新增或刷新票价: 文档 id 由 出发站 到达站 出发日期 航班号 舱位码 组合生成 (见 TrafficInfo 的 CompositeId),
+     * 已存在的文档只更新 时间戳 / 价格 / 舱位数 (保留 createTime), 不存在时新增; 一次 bulk 完成, 无需先查询.
+     * 去重缓存有效期内 价格 / 舱位数 未变化的重复票价只发送脚本刷新时间戳, 不再携带完整文档;
+     * 只发送脚本的文档已不存在 (如已被清理) 时, 立即改为携带完整文档重发
+     */
     public void insert(List<TrafficInfo> trafficInfos) {
-        long halfAnHour = 5 * 6 * 60 * 1000;
-        String indexName = IndexBuilder.getIndexName(TrafficInfo.class);
-        String typeName = IndexBuilder.getType(TrafficInfo.class);
-        List<String> str = trafficInfos.stream().map(TrafficInfo::getTrafficInfo).collect(Collectors.toList());
-        long currentTime = System.currentTimeMillis();
-        BoolQueryBuilder boolBuilder = QueryBuilders.boolQuery();
-        // 查询 出发站 到达站 出发日期 航班号 是否相同
-        boolBuilder.must(QueryBuilders.termsQuery("trafficInfo", str));
-        // 在当前半小时之内
-        RangeQueryBuilder halfAnHourTime = EsUtils.rangeQuery(currentTime, halfAnHour, "createTime");
-        boolBuilder.must(halfAnHourTime);
-        SearchSourceBuilder searchSourceBuilder = EsUtils.listByQueryBuild(boolBuilder, null);
-        SearchRequest searchRequest = EsUtils.getSearchRequest(searchSourceBuilder, indexName, typeName);
-        SearchResponse searchResponse = EsUtils.getSearchResponse(restHighLevelClient, searchRequest);
-        long total = searchResponse.getHits().getTotalHits();
-        // 如果大于 0 则说明存在 出发站 到达站 出发日期 航班号 且 时间在半小时之内的数据
-        if (total > 0) {
-            updateTrafficTimeInfo(searchResponse, indexName, typeName, trafficInfos);
+        if (trafficInfos.isEmpty()) {
+            return;
+        }
+
+        EntityMetadata metadata = EntityMetadata.of(TrafficInfo.class);
+        DocumentSerializer<TrafficInfo> serializer = DocumentSerializer.of(TrafficInfo.class);
+        BulkRequest bulkRequest = new BulkRequest();
+        // 写请求 -> 在 trafficInfos 中的位置
+        Map<DocWriteRequest<?>, Integer> positions = new IdentityHashMap<>(trafficInfos.size());
+        long[] keys = new long[trafficInfos.size()];
+        long[] values = new long[trafficInfos.size()];
+        for (int i = 0; i < trafficInfos.size(); i++) {
+            TrafficInfo trafficInfo = trafficInfos.get(i);
+            keys[i] = RecentKeyCache.fingerprint(metadata.getId(trafficInfo));
+            values[i] = RecentKeyCache.fingerprint(trafficInfo.getPrice() + "|" + trafficInfo.getNumberOfCabins());
+            UpdateRequest updateRequest = recentFares.contains(keys[i], values[i])
+                    ? serializer.toScriptUpdateRequest(trafficInfo, refreshFareScript(trafficInfo)).retryOnConflict(UPSERT_RETRY_ON_CONFLICT)
+                    : fareUpsertRequest(serializer, trafficInfo);
+            bulkRequest.add(updateRequest);
+            positions.put(updateRequest, i);
+        }
+
+        BulkResult result = EsBulkUtils.bulkRequest(restHighLevelClient, bulkRequest, bulkRetryPolicy);
+        boolean[] failed = new boolean[trafficInfos.size()];
+        BulkRequest upsertRequest = new BulkRequest();
+        for (BulkResult.FailedItem failedItem : result.getFailedItems()) {
+            int i = positions.get(failedItem.getRequest());
+            UpdateRequest updateRequest = (UpdateRequest) failedItem.getRequest();
+            if (failedItem.getStatus() == RestStatus.NOT_FOUND && Objects.isNull(updateRequest.upsertRequest())) {
+                UpdateRequest retry = fareUpsertRequest(serializer, trafficInfos.get(i));
+                upsertRequest.add(retry);
+                positions.put(retry, i);
+            } else {
+                failed[i] = true;
+            }
+        }
+        if (upsertRequest.numberOfActions() > 0) {
+            for (BulkResult.FailedItem failedItem : EsBulkUtils.bulkRequest(restHighLevelClient, upsertRequest, bulkRetryPolicy).getFailedItems()) {
+                failed[positions.get(failedItem.getRequest())] = true;
+            }
         }
 
-        // 覆盖新增
-//        bulkInsert(trafficInfos);
+        // 只记录写入成功的票价; 失败的移除记录, 下次携带完整文档写入
+        for (int i = 0; i < trafficInfos.size(); i++) {
+            if (failed[i]) {
+                recentFares.invalidate(keys[i]);
+            } else {
+                recentFares.put(keys[i], values[i]);
+            }
+        }
     }
 
+    /**
+     * 携带完整文档的票价 upsert: 已存在时执行刷新脚本, 不存在时新增
+     */
+    private static UpdateRequest fareUpsertRequest(DocumentSerializer<TrafficInfo> serializer, TrafficInfo trafficInfo) {
+        return serializer.toUpdateRequest(trafficInfo, refreshFareScript(trafficInfo)).retryOnConflict(UPSERT_RETRY_ON_CONFLICT);
+    }
 
+    /**
+     * 刷新票价脚本 (脚本内容固定, 只有参数变化, ES 端编译结果可复用)
+     */
+    private static Script refreshFareScript(TrafficInfo trafficInfo) {
+        Map<String, Object> params = new HashMap<>(4);
+        params.put("dataTime", trafficInfo.getDataTime());
+        params.put("price", trafficInfo.getPrice());
+        params.put("numberOfCabins", trafficInfo.getNumberOfCabins());
+        return new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, REFRESH_FARE_SCRIPT, params);
+    }
 
-        public void updateTrafficTimeInfo(SearchResponse searchResponse, String indexName, String typeName, List<TrafficInfo> newTrafficInfos) {
-        IdsQueryBuilder idsQueryBuilder = QueryBuilders.idsQuery();
-        for (SearchHit hit : searchResponse.getHits().getHits()) {
-            String id = hit.getId();
-            idsQueryBuilder.addIds(id);
+    /**
+     * 交由后台批量写入器 按条数 / 字节数 / 时间间隔 自动提交
+     */
+    public void bulkInsert(List<TrafficInfo> trafficInfos) {
+        DocumentSerializer<TrafficInfo> serializer = DocumentSerializer.of(TrafficInfo.class);
+        for (TrafficInfo trafficInfo : trafficInfos) {
+            bulkIngester.add(serializer.toIndexRequest(trafficInfo));
         }
+    }
 
-        SearchSourceBuilder searchSourceBuilder = EsUtils.listByQueryBuild(idsQueryBuilder, null);
-        SearchRequest searchRequest = EsUtils.getSearchRequest(searchSourceBuilder, indexName, typeName);
-        SearchResponse searchResponseIds = EsUtils.getSearchResponse(restHighLevelClient, searchRequest);
-        List<TrafficInfo> trafficInfos = EsUtils.hitResultToObj(searchResponseIds.getHits());
-        for (TrafficInfo trafficInfo : trafficInfos) {
-            // 更新为当前时间
-            trafficInfo.setDataTime(System.currentTimeMillis());
-            newTrafficInfos.add(trafficInfo);
+    /**
+     * 全量导入 (导入期间关闭自动刷新与副本, 结束后恢复并刷新一次)
+     * <p>
+     * BulkLoadMode 只用于在 close 时恢复索引配置, 块内不引用; 提交中途被中断时, 也要等已提交的批次写完才恢复配置
+     *
+     * @return 失败条数
+     */
+    @SuppressWarnings("try")
+    public long reload(List<TrafficInfo> trafficInfos) throws IOException, InterruptedException {
+        DocumentSerializer<TrafficInfo> serializer = DocumentSerializer.of(TrafficInfo.class);
+        List<CompletableFuture<BulkResult>> futures = new ArrayList<>();
+        try (BulkLoadMode ignored = BulkLoadMode.begin(restHighLevelClient, TrafficInfo.class)) {
+            try {
+                BulkRequest bulkRequest = new BulkRequest();
+                for (TrafficInfo trafficInfo : trafficInfos) {
+                    bulkRequest.add(serializer.toIndexRequest(trafficInfo));
+                    if (bulkRequest.numberOfActions() >= RELOAD_BULK_ACTIONS) {
+                        futures.add(submitReload(bulkRequest));
+                        bulkRequest = new BulkRequest();
+                    }
+                }
+                if (bulkRequest.numberOfActions() > 0) {
+                    futures.add(submitReload(bulkRequest));
+                }
+            } finally {
+                // 等待全部写入完成后再恢复配置 (submitReload 已将异常转为 BulkResult, join 不会抛出)
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            }
         }
+
+        long failed = 0;
+        for (CompletableFuture<BulkResult> future : futures) {
+            failed += future.join().getFailedItems().size();
+        }
+        return failed;
     }
 
+    private CompletableFuture<BulkResult> submitReload(BulkRequest bulkRequest) throws InterruptedException {
+        return asyncBulkExecutor.submit(bulkRequest)
+                .exceptionally(e -> BulkResult.failed(bulkRequest, e));
+    }
 
 }
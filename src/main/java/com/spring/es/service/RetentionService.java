@@ -0,0 +1,87 @@
+package com.spring.es.service;
+
+import com.spring.es.config.es.ElasticsProperties;
+import com.spring.es.model.entity.TrafficInfo;
+import com.spring.es.plugin.DeleteByQueryProgress;
+import com.spring.es.plugin.DeleteByQueryTasks;
+import com.spring.es.plugin.PartitionRetention;
+import com.spring.es.plugin.RetentionReport;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * 类描述：过期数据清理 (按 retention-cron 定时执行)
+ */
+@Slf4j
+@Service
+public class RetentionService {
+
+    @Autowired
+    private RestHighLevelClient restHighLevelClient;
+
+    @Autowired
+    private ElasticsProperties elasticsProperties;
+
+    @Scheduled(cron = "${spring.data.elasticsearch.retention-cron:0 10 * * * ?}")
+    public void scheduledPurge() {
+        try {
+            purgeExpired();
+        } catch (IOException | RuntimeException e) {
+            log.error("清理过期数据失败", e);
+        }
+    }
+
+    /**
+     * 删除保留期之前的航班分区, 并清理未过期分区中入库时间早于保留期的票价
+     *
+     * @return
+     * @throws IOException
+     */
+    public synchronized RetentionReport purgeExpired() throws IOException {
+        RetentionReport report = PartitionRetention.apply(restHighLevelClient, TrafficInfo.class,
+                TimeValue.parseTimeValue(elasticsProperties.getRetention(), "retention"),
+                elasticsProperties.getRetentionForceMerge(),
+                elasticsProperties.getRetentionRequestsPerSecond());
+        log.info("清理过期数据: {}", report);
+        return report;
+    }
+
+    /**
+     * 后台删除任务进度
+     *
+     * @param taskId
+     * @return 任务不存在时为空
+     * @throws IOException
+     */
+    public Optional<DeleteByQueryProgress> deleteTaskProgress(String taskId) throws IOException {
+        return DeleteByQueryTasks.progress(restHighLevelClient, taskId);
+    }
+
+    /**
+     * 取消后台删除任务
+     *
+     * @param taskId
+     * @throws IOException
+     */
+    public void cancelDeleteTask(String taskId) throws IOException {
+        DeleteByQueryTasks.cancel(restHighLevelClient, taskId);
+    }
+
+    /**
+     * 调整后台删除任务限速 (如查询高峰期降速)
+     *
+     * @param taskId
+     * @param requestsPerSecond
+     * @throws IOException
+     */
+    public void rethrottleDeleteTask(String taskId, float requestsPerSecond) throws IOException {
+        DeleteByQueryTasks.rethrottle(restHighLevelClient, taskId, requestsPerSecond);
+    }
+}
@@ -1,22 +1,118 @@
 package com.spring.es.utils;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSONReader;
 import com.spring.es.model.entity.TrafficInfo;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * 类描述：
  */
 public class CommonUtils {
 
+    /**
+     * 票价字段: 时间戳
+     */
+    private static final String FARE_DATA_TIME = "s";
+
+    /**
+     * 票价字段: 价格
+     */
+    private static final String FARE_PRICE = "p";
+
+    /**
+     * 票价字段: 舱位码
+     */
+    private static final String FARE_CLASS_CODE = "c";
+
+    /**
+     * 票价字段: 舱位数
+     */
+    private static final String FARE_NUMBER_OF_CABINS = "t";
+
     public static List<TrafficInfo> parsingJsonData(String jsonData) {
-        return parsingJsonData(JSON.parseObject(jsonData));
+        List<TrafficInfo> trafficInfos = new ArrayList<>();
+        parsingJsonData(new StringReader(jsonData), trafficInfos::add);
+        return trafficInfos;
+    }
+
+    /**
+     * 流式解析 JSON (站点 -> 日期 -> 航班号 -> 票价数组)
+     * 按 token 顺序读取, 不构建 JSONObject, 每解析出一条即交给 consumer
+     *
+     * @param reader
+     * @param consumer
+     * @return 解析条数
+     */
+    public static long parsingJsonData(Reader reader, Consumer<TrafficInfo> consumer) {
+        long count = 0;
+        long createTime = System.currentTimeMillis();
+        try (JSONReader jsonReader = new JSONReader(reader)) {
+            jsonReader.startObject();
+            while (jsonReader.hasNext()) {
+                // 出发站点
+                String siteStartAndEnd = jsonReader.readString();
+                jsonReader.startObject();
+                while (jsonReader.hasNext()) {
+                    // 日期
+                    String departureDate = jsonReader.readString();
+                    jsonReader.startObject();
+                    while (jsonReader.hasNext()) {
+                        // 航班号 -> 票价数组
+                        String flightNumber = jsonReader.readString();
+                        String trafficInfoStr = trafficInfoKey(siteStartAndEnd, departureDate, flightNumber);
+                        jsonReader.startArray();
+                        while (jsonReader.hasNext()) {
+                            String dataTime = null;
+                            String price = null;
+                            String classCode = null;
+                            String numberOfCabins = null;
+                            jsonReader.startObject();
+                            while (jsonReader.hasNext()) {
+                                String key = jsonReader.readString();
+                                Object value = jsonReader.readObject();
+                                String text = Objects.nonNull(value) ? value.toString() : null;
+                                switch (key) {
+                                    case FARE_DATA_TIME:
+                                        dataTime = text;
+                                        break;
+                                    case FARE_PRICE:
+                                        price = text;
+                                        break;
+                                    case FARE_CLASS_CODE:
+                                        classCode = text;
+                                        break;
+                                    case FARE_NUMBER_OF_CABINS:
+                                        numberOfCabins = text;
+                                        break;
+                                    default:
+                                        break;
+                                }
+                            }
+                            jsonReader.endObject();
+
+                            consumer.accept(newTrafficInfo(siteStartAndEnd, departureDate, flightNumber, trafficInfoStr,
+                                    dataTime, price, classCode, numberOfCabins, createTime));
+                            count++;
+                        }
+                        jsonReader.endArray();
+                    }
+                    jsonReader.endObject();
+                }
+                jsonReader.endObject();
+            }
+            jsonReader.endObject();
+        }
+
+        return count;
     }
 
     /**
@@ -28,37 +124,29 @@ public class CommonUtils {
     @SuppressWarnings(value = "all")
     public static List<TrafficInfo> parsingJsonData(JSONObject jsonObject) {
         List<TrafficInfo> trafficInfos = new ArrayList<>();
+        long createTime = System.currentTimeMillis();
         for (Map.Entry<String, Object> stringMapEntry : jsonObject.entrySet()) {
 
             // 出发站点
             String siteStartAndEnd = stringMapEntry.getKey();
-            String trafficInfoStr = siteStartAndEnd.trim();
 
             Map<String, Object> stateMap = (Map<String, Object>) stringMapEntry.getValue();
             // 日期
             for (Map.Entry<String, Object> mapEntry : stateMap.entrySet()) {
                 String departureDate = mapEntry.getKey();
                 // 航班信息列表
-                trafficInfoStr = trafficInfoStr.concat(mapEntry.getKey().trim());
                 Map<String, Object> dateMap = (Map<String, Object>) mapEntry.getValue();
 
                 for (Map.Entry<String, Object> stringListEntry : dateMap.entrySet()) {
                     String flightNumber = stringListEntry.getKey();
-                    trafficInfoStr = trafficInfoStr.concat(stringListEntry.getKey());
-                    JSONArray jsonArray = JSONArray.parseArray(JSON.toJSONString(stringListEntry.getValue()));
-                    for (Object map : jsonArray) {
-                        Map<String, String> value = (Map<String, String>) map;
-                        TrafficInfo trafficInfo = new TrafficInfo();
-                        trafficInfo.setSiteStartAndEnd(siteStartAndEnd);
-                        trafficInfo.setDepartureDate(departureDate);
-                        trafficInfo.setFlightNumber(flightNumber);
-                        trafficInfo.setTrafficInfo(trafficInfoStr);
-                        trafficInfo.setDataTime(Long.parseLong(value.get("s")));
-                        trafficInfo.setPrice(value.get("p"));
-                        trafficInfo.setClassCode(value.get("c"));
-                        trafficInfo.setNumberOfCabins(Objects.nonNull(value.get("t")) ? Integer.parseInt(value.get("t")) : null);
-                        trafficInfo.setCreateTime(System.currentTimeMillis());
-                        trafficInfos.add(trafficInfo);
+                    String trafficInfoStr = trafficInfoKey(siteStartAndEnd, departureDate, flightNumber);
+                    // 已是 JSONArray, 无需再序列化后重新解析
+                    List<Object> fares = (List<Object>) stringListEntry.getValue();
+                    for (Object map : fares) {
+                        Map<String, Object> value = (Map<String, Object>) map;
+                        trafficInfos.add(newTrafficInfo(siteStartAndEnd, departureDate, flightNumber, trafficInfoStr,
+                                toText(value.get(FARE_DATA_TIME)), toText(value.get(FARE_PRICE)),
+                                toText(value.get(FARE_CLASS_CODE)), toText(value.get(FARE_NUMBER_OF_CABINS)), createTime));
                     }
                 }
             }
@@ -67,4 +155,35 @@ public class CommonUtils {
         return trafficInfos;
 
     }
+
+    /**
+     * 出发站 到达站 出发日期 航班号 组合键 (用于判断过期)
+     *
+     * @param siteStartAndEnd
+     * @param departureDate
+     * @param flightNumber
+     * @return
+     */
+    public static String trafficInfoKey(String siteStartAndEnd, String departureDate, String flightNumber) {
+        return siteStartAndEnd.trim().concat(departureDate.trim()).concat(flightNumber);
+    }
+
+    private static TrafficInfo newTrafficInfo(String siteStartAndEnd, String departureDate, String flightNumber, String trafficInfoStr,
+                                              String dataTime, String price, String classCode, String numberOfCabins, long createTime) {
+        TrafficInfo trafficInfo = new TrafficInfo();
+        trafficInfo.setSiteStartAndEnd(siteStartAndEnd);
+        trafficInfo.setDepartureDate(departureDate);
+        trafficInfo.setFlightNumber(flightNumber);
+        trafficInfo.setTrafficInfo(trafficInfoStr);
+        trafficInfo.setDataTime(Long.parseLong(dataTime));
+        trafficInfo.setPrice(price);
+        trafficInfo.setClassCode(classCode);
+        trafficInfo.setNumberOfCabins(Objects.nonNull(numberOfCabins) ? Integer.parseInt(numberOfCabins) : null);
+        trafficInfo.setCreateTime(createTime);
+        return trafficInfo;
+    }
+
+    private static String toText(Object value) {
+        return Objects.nonNull(value) ? value.toString() : null;
+    }
 }